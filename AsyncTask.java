@@ -0,0 +1,93 @@
+/**
+ * A task whose slow part runs on another thread, so that it doesn't hold up the game loop. Start it
+ * with Timer.runAsync(): work() is handed to the timer's Executor right away, and when it's done the
+ * worker puts the task in the timer's queue of finished tasks. The result comes back to done() on the
+ * game thread, so nothing in the game is ever touched by another thread.
+ *
+ * An async task finishes on exactly the tick that it was made with, counted from when it's started,
+ * like any other task, so a game that uses the result is the same from one run to the next however fast
+ * the work was. If the work isn't done by then, the tick waits for it, and while profiling the wait is
+ * counted in the task's late ticks (see TaskProfile). Turning the task off holds back its tick until
+ * it's turned on again, as for any task.
+ *
+ * Cancelling an async task stops done() from being called, but doesn't stop work() if it has started.
+ */
+public abstract class AsyncTask<T> extends Task<T> {
+    private boolean started;  // true once the task has been handed to a timer's runAsync()
+    boolean received;         // true once the timer has taken the task out of its queue of finished tasks
+    private T value;          // what work() returned, handed over through the queue
+    private Exception error;  // what work() threw, if it failed
+
+    /**
+     * @param ticks the tick to finish on, counted from when the task is started
+     */
+    public AsyncTask(int ticks) {
+        super(ticks, 1, null, true);
+        if (ticks <= 0) {
+            throw new IllegalArgumentException("Invalid number of ticks: " + ticks);
+        }
+    }
+
+    /**
+     * Does the slow part of the task. This runs on one of the timer's worker threads, so it must not
+     * touch the game.
+     * @return the result, which is passed to done()
+     * @throws Exception if the work fails, which is passed to failed()
+     */
+    public abstract T work() throws Exception;
+
+    /**
+     * Takes the result of the work. This runs on the game thread, during a tick.
+     * @param result what work() returned
+     */
+    public abstract void done(T result);
+
+    /**
+     * Takes the exception that the work failed with. This runs on the game thread, during a tick. By
+     * default it throws it on, from the timer's tick().
+     * @param e what work() threw
+     */
+    public void failed(Exception e) {
+        throw new IllegalStateException("An async task failed", e);
+    }
+
+    /**
+     * Marks the task as started, so that it can't be started twice.
+     */
+    void start() {
+        if (started) {
+            throw new IllegalArgumentException("The async task has already been started");
+        }
+        started = true;
+    }
+
+    /**
+     * Runs the work and keeps its result. This is what the timer hands to its Executor, before it puts
+     * the task in its queue of finished tasks.
+     */
+    void execute() {
+        try {
+            value = work();
+        }
+        catch (Exception e) {
+            error = e;
+        }
+        catch (Error e) {
+            error = new IllegalStateException("The work of an async task hit an error", e);
+            throw e;
+        }
+    }
+
+    /**
+     * Hands the result of the work to done() or failed(). The timer has made sure that the work is done.
+     */
+    public final T run(int counter, T result) {
+        if (error != null) {
+            failed(error);
+        }
+        else {
+            done(value);
+        }
+        return value;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,557 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * The parts of a board that work on row bit masks, which are shared by Grid, TowerGrid, OffHeapGrid and
+ * BoardSnapshot. A subclass only has to say where the mask of each row is kept (rowWord) and where the
+ * top of each column is. This only answers the read-only questions; the boards that can change also
+ * implement Board.
+ */
+public abstract class BitBoard implements ReadOnlyBoard, DumbloxConstants {
+    protected int rows;
+    protected int columns;
+    protected int words;       //The number of words in each row mask
+    protected long[] wall_row; //The mask of an empty row: every bit that lies outside of the board's columns
+    protected ArrayList<Integer> completed_rows; //Reused by addBlockToPile for every block
+    protected boolean game_over;
+    protected PileHash hash_keys; //The keys that the pile is hashed with, made the first time they're needed
+    private int cluster_top;       //The top row of the last findClusterDrops(), where square 0 is
+    private int[] cluster_parent;  //Reused by findClusterDrops(): the union-find parent of each square
+    private int[] cluster_start;   //Where the squares of each cluster start in cluster_squares
+    private int[] cluster_squares; //The squares of every cluster, one cluster after another
+    private int[] cluster_order;   //The root square of each cluster, from the lowest cluster up
+    private int[] cluster_owner;   //The root of the cluster in each square as clusters fall, or -1
+    private byte[] cluster_colors; //The color of each square as clusters fall
+
+    /* Row masks are laid out so that column x of the board is bit (x + 1), counting across the words of the
+     * row (bit b is bit b % 64 of word b / 64). Bit 0 is the left wall and every bit above the last column
+     * is the right wall, so an empty row is just the wall bits and a full row has every bit set. Every row
+     * below the board is the floor and is always full. Narrow boards fit in one word per row, and wider
+     * boards just use more words, so the cost of a row operation grows with columns / 64.
+     */
+    protected static final long FULL_WORD = ~0L;
+    protected static final int MAX_ROWS_PER_BLOCK = 4;
+
+    protected BitBoard(int rows, int columns) {
+        if (rows < 1 || columns < 1) {
+            throw new IllegalArgumentException("The grid must have at least one row and one column");
+        }
+
+        this.rows = rows;
+        this.columns = columns;
+        this.game_over = false;
+
+        words = (columns + 2 + Long.SIZE - 1) / Long.SIZE;
+        wall_row = new long[words];
+        Arrays.fill(wall_row, FULL_WORD);
+        for (int j = 0; j < columns; j++) {
+            wall_row[(j + 1) / Long.SIZE] &= ~(1L << (j + 1));
+        }
+        completed_rows = new ArrayList<Integer>(MAX_ROWS_PER_BLOCK);
+    }
+
+    /**
+     * Makes a board of the same size as another one, sharing its wall row.
+     * @param board the other board
+     */
+    protected BitBoard(BitBoard board) {
+        this.rows = board.rows;
+        this.columns = board.columns;
+        this.words = board.words;
+        this.wall_row = board.wall_row;
+        this.hash_keys = board.hash_keys;
+        this.game_over = false;
+        completed_rows = new ArrayList<Integer>(MAX_ROWS_PER_BLOCK);
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public boolean isGameOver() {
+        return game_over;
+    }
+
+    /**
+     * Hashes the pile from scratch. Grid keeps its hash up to date instead.
+     * @return the hash of the pile
+     */
+    public long getHash() {
+        if (hash_keys == null) hash_keys = new PileHash(columns);
+        return hash_keys.hash(this);
+    }
+
+    /**
+     * Gets one word of the bit mask of a row, including the wall bits. Rows above the board only contain
+     * the walls and every row below the board is treated as the floor.
+     * @param row the row number
+     * @param word the index of the word (between 0 and words - 1)
+     * @return the word of the row mask
+     */
+    protected abstract long rowWord(int row, int word);
+
+    /**
+     * Checks if the square of a row at the given column is filled, using the row mask.
+     * @param bits the row mask
+     * @param column the column
+     * @return true if the square is filled
+     */
+    protected static boolean isFilled(long[] bits, int column) {
+        return (bits[(column + 1) / Long.SIZE] & (1L << (column + 1))) != 0;
+    }
+
+    /**
+     * Fills the square of a row at the given column in the row mask.
+     * @param bits the row mask
+     * @param column the column
+     */
+    protected static void setFilled(long[] bits, int column) {
+        bits[(column + 1) / Long.SIZE] |= 1L << (column + 1);
+    }
+
+    /**
+     * Turns a row mask into a garbage row: every square is filled except for the hole.
+     * @param bits the row mask
+     * @param hole the column that is left empty
+     */
+    protected static void setGarbage(long[] bits, int hole) {
+        Arrays.fill(bits, FULL_WORD);
+        bits[(hole + 1) / Long.SIZE] &= ~(1L << (hole + 1));
+    }
+
+    /**
+     * This method determines if a given block is colliding with another square in the pile or
+     * a wall of the grid. This method is used for collision detection for rotating and moving a block.
+     * It is assumed that the block that is passed in is already rotated/moved in the tentative direction
+     * so that this method does not need to simulate the movement/rotation itself.
+     * @param block the block whose collision is being detected
+     * @return true if the block collides, false otherwise
+     */
+    public boolean collides(Block block) {
+        return collides(block, 0);
+    }
+
+    /**
+     * Determines if a block would collide if it was moved down by the given number of rows.
+     * @param block the block whose collision is being detected
+     * @param drop the number of rows to move the block down by
+     * @return true if the block collides, false otherwise
+     */
+    protected boolean collides(Block block, int drop) {
+        //Shift the block's row masks so that bit 0 lines up with the left wall sentinel.
+        //A block that is past one of the wall sentinels can't be shifted into a row mask.
+        int shift = block.getMaskLeft() + 1;
+        if (shift < 0 || shift > columns + 1) {
+            return true;
+        }
+        int word = shift / Long.SIZE;
+        int offset = shift % Long.SIZE;
+
+        //The wall and floor bits turn this into a single test per row of the block, or two when the block
+        //straddles a word boundary. Rows above the grid only hold the walls, which could happen when the
+        //piece first appears and the user rotates it.
+        int[] masks = block.getRowMasks();
+        int top = block.getMaskTop() + drop;
+        for (int i = 0; i < masks.length; i++) {
+            long mask = masks[i] & 0xFFFFFFFFL;
+            if ((rowWord(top + i, word) & (mask << offset)) != 0) {
+                return true;
+            }
+            if (offset != 0 && (mask >>> (Long.SIZE - offset)) != 0) {
+                //The rest of the block is in the next word, or past the right wall if there isn't one
+                if (word + 1 == words || (rowWord(top + i, word + 1) & (mask >>> (Long.SIZE - offset))) != 0) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Finds how far a block can fall before it lands on the pile or the floor. This is used for dropping
+     * a block and for showing where it would land. As long as the block is above the top of every column
+     * it covers, the distance comes straight from the column tops. A block that has been tucked under
+     * an overhang falls back to checking one row at a time.
+     * @param block the block that is falling
+     * @return the number of rows the block can move down
+     */
+    public int dropDistance(Block block) {
+        int distance = Integer.MAX_VALUE;
+        for (int i = 0; i < block.getSquareCount(); i++) {
+            int x = block.getSquareX(i);
+            int y = block.getSquareY(i);
+            int column_top = getColumnTop(x);
+
+            if (y >= column_top) {
+                //There is pile above this square, so the column tops can't be trusted
+                distance = 0;
+                while (!collides(block, distance + 1)) {
+                    distance++;
+                }
+                return distance;
+            }
+            distance = Math.min(distance, column_top - y - 1);
+        }
+        return distance;
+    }
+
+    /**
+     * Checks if every square of a row is filled. The boards that count the squares of each row override
+     * this with the count.
+     * @param row the row, which must be on the board
+     * @return true if the row is full
+     */
+    protected boolean isRowFull(int row) {
+        for (int w = 0; w < words; w++) {
+            if (rowWord(row, w) != FULL_WORD) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Finds the full rows in a range of rows.
+     * @param top the first row
+     * @param bottom the row after the last row
+     * @return a list of the full rows from the top down. The same list is reused by addBlockToPile.
+     */
+    protected ArrayList<Integer> findCompletedRows(int top, int bottom) {
+        completed_rows.clear();
+        for (int i = Math.max(top, 0); i < Math.min(bottom, rows); i++) {
+            if (isRowFull(i)) completed_rows.add(Integer.valueOf(i));
+        }
+        return completed_rows;
+    }
+
+    /**
+     * Finds the rows that a block completed when it locked, for the boards' addBlockToPile(). Only the rows
+     * that the block landed in can have been completed by it.
+     * @param block the block that has just been added to the pile
+     * @return a list of the completed rows from the top down. The same list is reused by the next call.
+     */
+    protected ArrayList<Integer> findCompletedRows(Block block) {
+        return findCompletedRows(block.getMaskTop(), block.getMaskTop() + block.getRowMasks().length);
+    }
+
+    /**
+     * Gets the number of filled squares in a row. The boards that keep a count for each row override this.
+     * @param row the row, which must be on the board
+     * @return the number of filled squares
+     */
+    protected int getRowFill(int row) {
+        int count = 0;
+        for (int w = 0; w < words; w++) {
+            count += Long.bitCount(rowWord(row, w) & ~wall_row[w]);
+        }
+        return count;
+    }
+
+    /**
+     * Checks if a square is filled, using the row mask. Column -1 and column getColumns() are the walls.
+     */
+    private boolean isSquareFilled(int row, int column) {
+        return (rowWord(row, (column + 1) / Long.SIZE) & (1L << (column + 1))) != 0;
+    }
+
+    /**
+     * Works out how the features of the board would change if a block locked where it is, without
+     * changing the board. Only the rows and columns that the block touches are looked at, so rating a
+     * placement this way costs about as much as locking the block, instead of a pass over the whole pile.
+     * If the block completes rows, the columns whose highest square is in them are looked at too, since
+     * deleting the rows uncovers the holes under those squares. Every other column just loses one filled
+     * square and one row of height for each deleted row, and each full row with no transitions is
+     * replaced by an empty row with two.
+     * @param block the block, which is expected to be where it would lock, as for addBlockToPile()
+     * @param delta where the changes are put
+     * @return the delta that was passed in
+     */
+    public FeatureDelta evaluate(Block block, FeatureDelta delta) {
+        int holes = 0;
+        int transitions = 0;
+        int squares = block.getSquareCount();
+        for (int i = 0; i < squares; i++) {
+            int x = block.getSquareX(i);
+            int y = block.getSquareY(i);
+            if (y < 0) continue;
+
+            //Filling an empty square only changes the transitions on either side of it, where the squares
+            //of the block that are already in count as filled
+            boolean left = isSquareFilled(y, x - 1);
+            boolean right = isSquareFilled(y, x + 1);
+            for (int k = 0; k < i; k++) {
+                if (block.getSquareY(k) != y) continue;
+                if (block.getSquareX(k) == x - 1) left = true;
+                if (block.getSquareX(k) == x + 1) right = true;
+            }
+            transitions += (left ? -1 : 1) + (right ? -1 : 1);
+
+            //Each square fills a hole or adds to the height of its column, and the height that the highest
+            //square of the block in a column adds makes holes of any empty squares under it
+            holes--;
+            if (getBlockTop(block, x) == y) holes += Math.max(getColumnTop(x) - y, 0);
+        }
+
+        //The rows that the block completes, as bits from its mask top
+        int[] masks = block.getRowMasks();
+        int top = block.getMaskTop();
+        int full = 0;
+        int cleared = 0;
+        for (int k = 0; k < masks.length; k++) {
+            int row = top + k;
+            if (row >= 0 && row < rows && getRowFill(row) + Integer.bitCount(masks[k]) == columns) {
+                full |= 1 << k;
+                cleared++;
+            }
+        }
+
+        //A column whose highest square is deleted has its top moved down to the next square that stays,
+        //and the empty squares on the way stop being holes
+        if (cleared > 0) {
+            for (int j = 0; j < columns; j++) {
+                int column_top = Math.min(getColumnTop(j), getBlockTop(block, j));
+                int k = column_top - top;
+                if (k < 0 || k >= masks.length || (full & (1 << k)) == 0) continue;
+
+                for (int i = column_top + 1; i < rows; i++) {
+                    k = i - top;
+                    if (k < masks.length && (full & (1 << k)) != 0) continue;
+                    if (isSquareFilled(i, j) || hasSquare(block, i, j)) break;
+                    holes--;
+                }
+            }
+        }
+
+        delta.set(holes, transitions + cleared * 2, cleared);
+        return delta;
+    }
+
+    /**
+     * Checks if a block has a square on the board at the given row and column.
+     */
+    private static boolean hasSquare(Block block, int row, int column) {
+        for (int i = 0; i < block.getSquareCount(); i++) {
+            if (block.getSquareX(i) == column && block.getSquareY(i) == row) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Finds the highest square of a block in a column.
+     * @param block the block
+     * @param column the column
+     * @return the row of the highest square of the block that is on the board, or the number of rows if the
+     * block has none in the column
+     */
+    private int getBlockTop(Block block, int column) {
+        int top = rows;
+        for (int i = 0; i < block.getSquareCount(); i++) {
+            int y = block.getSquareY(i);
+            if (block.getSquareX(i) == column && y >= 0) top = Math.min(top, y);
+        }
+        return top;
+    }
+
+    /**
+     * Works out how the features of the board would change if a block locked where it is (see
+     * evaluate(Block, FeatureDelta)).
+     * @param block the block, which is expected to be where it would lock
+     * @return the changes
+     */
+    public FeatureDelta evaluate(Block block) {
+        return evaluate(block, new FeatureDelta());
+    }
+
+    /**
+     * Checks if a square of a block that is locking ends the game, for the boards' addBlockToPile(). A
+     * square that locks above the board has nowhere to go, and one that locks on a filled square of the
+     * top row means that the pile has reached the top. This has to be asked before the square is added.
+     * @param row the row that the square locks in
+     * @param column the column that the square locks in
+     * @return true if the game is over
+     */
+    protected boolean endsGame(int row, int column) {
+        if (row < 0) return true;
+        return row == 0 && isSquareFilled(0, column);
+    }
+
+    /**
+     * Checks the arguments of the boards' addGarbageRows().
+     * @param count the number of garbage rows, which can't be more than the rows of the board
+     * @param hole the column that is left empty in every garbage row
+     * @throws IllegalArgumentException if the garbage doesn't fit the board
+     */
+    protected void checkGarbage(int count, int hole) {
+        if (count < 0 || count > rows || hole < 0 || hole >= columns) {
+            throw new IllegalArgumentException("Invalid garbage: " + count + " rows with a hole at " + hole);
+        }
+    }
+
+    /**
+     * Gets the top of the pile.
+     * @return the row of the highest filled square on the board, or the number of rows if it's empty
+     */
+    protected int getPileTop() {
+        int top = rows;
+        for (int j = 0; j < columns; j++) {
+            top = Math.min(top, getColumnTop(j));
+        }
+        return top;
+    }
+
+    /**
+     * Finds the root of a square's cluster, halving the path to it along the way.
+     * @param square the square
+     * @return the root square of the cluster
+     */
+    private int findCluster(int square) {
+        while (cluster_parent[square] != square) {
+            cluster_parent[square] = cluster_parent[cluster_parent[square]];
+            square = cluster_parent[square];
+        }
+        return square;
+    }
+
+    /**
+     * Joins the clusters of two squares. The root with the lower number becomes the root of both.
+     * @param a one square
+     * @param b the other square
+     */
+    private void joinClusters(int a, int b) {
+        a = findCluster(a);
+        b = findCluster(b);
+        if (a < b) cluster_parent[b] = a;
+        else if (b < a) cluster_parent[a] = b;
+    }
+
+    /**
+     * Works out cascade gravity for the boards' dropClusters(): every cluster of squares that touch each
+     * other falls on its own until it lands on the floor or on another cluster. The board isn't changed;
+     * it writes the squares back from getDroppedColor().
+     *
+     * The clusters are found in one pass with union-find, joining each square to the squares left of it
+     * and above it. They are then dropped from the lowest one up, so that most clusters land on ones
+     * that have already fallen, and each one only looks down from its bottom squares. A cluster that is
+     * hooked around another one can still be held up by it, so the drops are repeated until nothing
+     * moves, which almost always takes one pass.
+     * @param top the top of the pile; only the rows from there down take part
+     * @return true if any cluster fell
+     */
+    protected boolean findClusterDrops(int top) {
+        cluster_top = top;
+        int size = (rows - top) * columns;
+        if (size == 0) return false;
+        if (cluster_parent == null || cluster_parent.length < size) {
+            cluster_parent = new int[size];
+            cluster_start = new int[size + 1];
+            cluster_squares = new int[size];
+            cluster_order = new int[size];
+            cluster_owner = new int[size];
+            cluster_colors = new byte[size];
+        }
+
+        //Find the clusters. Square (i, j) is number (i - top) * columns + j.
+        for (int i = top; i < rows; i++) {
+            for (int j = 0; j < columns; j++) {
+                int square = (i - top) * columns + j;
+                cluster_colors[square] = getColor(i, j);
+                if (cluster_colors[square] == EMPTY_SQUARE) {
+                    cluster_parent[square] = -1;
+                    continue;
+                }
+
+                cluster_parent[square] = square;
+                if (j > 0 && cluster_parent[square - 1] >= 0) joinClusters(square, square - 1);
+                if (i > top && cluster_parent[square - columns] >= 0) joinClusters(square, square - columns);
+            }
+        }
+
+        //Group the squares by cluster
+        Arrays.fill(cluster_start, 0, size + 1, 0);
+        for (int square = 0; square < size; square++) {
+            int root = cluster_parent[square] >= 0 ? findCluster(square) : -1;
+            cluster_owner[square] = root;
+            if (root >= 0) cluster_start[root + 1]++;
+        }
+        for (int square = 0; square < size; square++) {
+            cluster_start[square + 1] += cluster_start[square];
+        }
+        for (int square = 0; square < size; square++) {
+            int root = cluster_owner[square];
+            if (root >= 0) cluster_squares[cluster_start[root]++] = square;
+        }
+        //Filling in the squares moved each start to the end of its cluster, which is the next one's start
+        for (int square = size; square > 0; square--) {
+            cluster_start[square] = cluster_start[square - 1];
+        }
+        cluster_start[0] = 0;
+
+        //Order the clusters from the lowest bottom row up. The parents aren't needed any more, so a root's
+        //parent is cleared once its cluster has been put in order.
+        int clusters = 0;
+        for (int square = size - 1; square >= 0; square--) {
+            int root = cluster_owner[square];
+            if (root >= 0 && cluster_parent[root] == root) {
+                cluster_parent[root] = -1;
+                cluster_order[clusters++] = root;
+            }
+        }
+
+        //Drop the clusters until none of them can move
+        boolean moved = false;
+        boolean moving = true;
+        while (moving) {
+            moving = false;
+            for (int c = 0; c < clusters; c++) {
+                int root = cluster_order[c];
+                int first = cluster_start[root];
+                int last = cluster_start[root + 1];
+
+                //The cluster falls as far as the smallest gap under any of its bottom squares
+                int distance = Integer.MAX_VALUE;
+                for (int k = first; k < last && distance > 0; k++) {
+                    int below = cluster_squares[k] + columns;
+                    if (below < size && cluster_owner[below] == root) continue;
+
+                    int gap = 0;
+                    while (below < size && cluster_owner[below] < 0) {
+                        gap++;
+                        below += columns;
+                    }
+                    distance = Math.min(distance, gap);
+                }
+                if (distance == 0) continue;
+
+                int shift = distance * columns;
+                for (int k = first; k < last; k++) {
+                    cluster_owner[cluster_squares[k]] = -1;
+                }
+                for (int k = last - 1; k >= first; k--) {
+                    int square = cluster_squares[k];
+                    cluster_colors[square + shift] = cluster_colors[square];
+                    cluster_colors[square] = EMPTY_SQUARE;
+                    cluster_squares[k] = square + shift;
+                }
+                for (int k = first; k < last; k++) {
+                    cluster_owner[cluster_squares[k]] = root;
+                }
+                moving = true;
+                moved = true;
+            }
+        }
+        return moved;
+    }
+
+    /**
+     * Gets the color of a square after the last findClusterDrops().
+     * @param row the row, which must be at or below the top that was passed to findClusterDrops()
+     * @param column the column
+     * @return the color of the square, or EMPTY_SQUARE
+     */
+    protected byte getDroppedColor(int row, int column) {
+        int square = (row - cluster_top) * columns + column;
+        return cluster_owner[square] >= 0 ? cluster_colors[square] : EMPTY_SQUARE;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,170 @@
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Times the row-mask board (Grid) against the square-by-square board (ReferenceGrid) on wide boards.
+ * Three things are measured for each board width:
+ *   collides - collision checks for blocks all over a board whose bottom half is garbage
+ *   lock     - adding an I block to the pile in a well, which completes four rows that have to be found
+ *   clear    - deleting the completed rows and pushing the garbage back in
+ * The lock and clear times include a call to System.nanoTime() each, which is the same for both boards.
+ *
+ * Each number is the best of a number of rounds on a fresh board, since a single round can be thrown
+ * off by the JIT or the GC. The boards are timed in separate passes, all of Grid's rounds and then all
+ * of ReferenceGrid's, so that one board's numbers aren't taken while the JIT is still reacting to the
+ * other's. Even so, the JIT compiles the boards' loops for all of the widths that it has seen, which
+ * can make the wide boards more than twice as slow to clear as they are on their own, so for numbers
+ * that can be compared, time one board at one width in each JVM by naming them.
+ *
+ * Usage: java BoardBenchmark [iterations [rounds [grid|reference [columns]]]]
+ */
+public class BoardBenchmark implements DumbloxConstants {
+    private static final int[] COLUMNS = {64, 256, 1024};
+    private static final int ROWS = 40;
+    private static final int NUM_BLOCKS = 1024;
+
+    public static void main(String args[]) {
+        int iterations = 200000;
+        int rounds = 5;
+        String only = null;
+        int[] widths = COLUMNS;
+        if (args.length > 0)
+            iterations = Integer.parseInt(args[0]);
+        if (args.length > 1)
+            rounds = Integer.parseInt(args[1]);
+        if (args.length > 2)
+            only = args[2];
+        if (args.length > 3)
+            widths = new int[] {Integer.parseInt(args[3])};
+        if (iterations <= 0 || rounds <= 0) {
+            throw new IllegalArgumentException("The iterations and rounds must be positive");
+        }
+        for (int i = 0; i < widths.length; i++) {
+            if (widths[i] < 8) {
+                throw new IllegalArgumentException("The board must be at least 8 columns wide: " + widths[i]);
+            }
+        }
+        if (only != null && !only.equals("grid") && !only.equals("reference")) {
+            throw new IllegalArgumentException("Unknown board: " + only);
+        }
+
+        double[][] grid = null;
+        double[][] reference = null;
+        if (only == null || only.equals("grid"))
+            grid = pass(false, widths, iterations, rounds);
+        if (only == null || only.equals("reference"))
+            reference = pass(true, widths, iterations, rounds);
+
+        System.out.println("columns  board          collides (ns/op)  lock (ns/op)  clear (ns/op)");
+        for (int i = 0; i < widths.length; i++) {
+            int columns = widths[i];
+            if (grid != null)
+                print(columns, "Grid", grid[i]);
+            if (reference != null)
+                print(columns, "ReferenceGrid", reference[i]);
+            if (grid != null && reference != null) {
+                System.out.println(String.format("%7d  speed-up       %15.1fx  %11.1fx  %12.1fx", columns,
+                        reference[i][0] / grid[i][0], reference[i][1] / grid[i][1], reference[i][2] / grid[i][2]));
+            }
+        }
+    }
+
+    private static void print(int columns, String name, double[] result) {
+        System.out.println(String.format("%7d  %-13s  %16.1f  %12.1f  %13.1f",
+                columns, name, result[0], result[1], result[2]));
+    }
+
+    /**
+     * Times one kind of board at every width, keeping the best of the rounds for each number. The first
+     * round at every width is run before any is timed, to warm up the JIT.
+     * @param reference true to time ReferenceGrid, false to time Grid
+     * @param widths the numbers of columns to time the board at
+     * @param iterations the number of operations to time in each round
+     * @param rounds the number of rounds
+     * @return the best time per operation in nanoseconds of collides, lock and clear, for each width
+     */
+    private static double[][] pass(boolean reference, int[] widths, int iterations, int rounds) {
+        for (int i = 0; i < widths.length; i++) {
+            run(newBoard(reference, widths[i]), iterations);
+        }
+
+        double[][] best = new double[widths.length][];
+        for (int round = 0; round < rounds; round++) {
+            for (int i = 0; i < widths.length; i++) {
+                double[] result = run(newBoard(reference, widths[i]), iterations);
+                if (best[i] == null) {
+                    best[i] = result;
+                    continue;
+                }
+                for (int j = 0; j < result.length; j++) {
+                    best[i][j] = Math.min(best[i][j], result[j]);
+                }
+            }
+        }
+        return best;
+    }
+
+    private static Board newBoard(boolean reference, int columns) {
+        return reference ? new ReferenceGrid(ROWS, columns) : new Grid(ROWS, columns);
+    }
+
+    /**
+     * Times both benchmarks on a board.
+     * @param board an empty board
+     * @param iterations the number of operations to time
+     * @return the time per operation in nanoseconds of collides, lock and clear
+     */
+    private static double[] run(Board board, int iterations) {
+        Random generator = new Random(1);
+        BlockType[] types = BlockType.values();
+        int columns = board.getColumns();
+        int hole = columns / 2;
+
+        // the bottom half of the board is garbage with one well through it
+        board.addGarbageRows(ROWS / 2, hole);
+
+        Block[] blocks = new Block[NUM_BLOCKS];
+        for (int i = 0; i < NUM_BLOCKS; i++) {
+            blocks[i] = new Block(2 + generator.nextInt(columns - 4), 2 + generator.nextInt(ROWS - 4),
+                    types[generator.nextInt(types.length)]);
+        }
+
+        int collisions = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            if (board.collides(blocks[i % NUM_BLOCKS])) collisions++;
+        }
+        double collides = (double) (System.nanoTime() - start) / iterations;
+
+        // an upright I block that fills the well in the bottom four rows
+        Block block = new Block(hole, ROWS - 2, BlockType.I_BLOCK);
+        block.rotate(board, RotateDirection.CLOCKWISE);
+        int cleared = 0;
+        long lock_time = 0;
+        long clear_time = 0;
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            ArrayList<Integer> completed_rows = board.addBlockToPile(block);
+            long locked = System.nanoTime();
+            cleared += completed_rows.size();
+            board.deleteRows(completed_rows);
+            board.addGarbageRows(completed_rows.size(), hole);
+            long end = System.nanoTime();
+
+            lock_time += locked - start;
+            clear_time += end - locked;
+            start = end;
+        }
+        double lock = (double) lock_time / iterations;
+        double clear = (double) clear_time / iterations;
+
+        // make sure both boards did the same amount of work
+        if (cleared != 4 * iterations || board.isGameOver()) {
+            throw new IllegalStateException(board.getClass().getName() + " cleared " + cleared + " rows");
+        }
+        if (collisions == 0) {
+            throw new IllegalStateException(board.getClass().getName() + " found no collisions");
+        }
+        return new double[] {collides, lock, clear};
+    }
+}
\ No newline at end of file
@@ -0,0 +1,85 @@
+import java.util.LinkedHashMap;
+import java.util.Set;
+
+/**
+ * Makes boards by name, so that the board can be picked on the command line. The boards that come with
+ * the game are registered here, and new ones can be added with register().
+ *
+ * Two names joined with a '+' (for example "grid+offheap") make a ShadowBoard that runs the second board
+ * alongside the first one and stops the game if they ever disagree.
+ *
+ * TowerGrid isn't registered, since these are the boards that the game can be started with and the
+ * panel draws every row of the board. A tower game is headless; make its TowerGrid directly.
+ */
+public abstract class BoardFactory {
+    public static final String DEFAULT_BOARD = "grid";
+
+    private static LinkedHashMap<String, BoardFactory> factories = new LinkedHashMap<String, BoardFactory>();
+
+    static {
+        register("grid", new BoardFactory() {
+            public Board create(int rows, int columns) {
+                return new Grid(rows, columns);
+            }
+        });
+        register("reference", new BoardFactory() {
+            public Board create(int rows, int columns) {
+                return new ReferenceGrid(rows, columns);
+            }
+        });
+        register("offheap", new BoardFactory() {
+            public Board create(int rows, int columns) {
+                return new OffHeapGrid(rows, columns);
+            }
+        });
+    }
+
+    /**
+     * Makes a new empty board.
+     * @param rows the number of rows of the board
+     * @param columns the number of columns of the board
+     * @return the board
+     */
+    public abstract Board create(int rows, int columns);
+
+    /**
+     * Adds a board that can be made by name, or replaces the one with the same name.
+     * @param name the name of the board, which can't contain a '+'
+     * @param factory makes the board
+     */
+    public static synchronized void register(String name, BoardFactory factory) {
+        if (name.indexOf('+') >= 0) {
+            throw new IllegalArgumentException("Board names can't contain a '+': " + name);
+        }
+        factories.put(name, factory);
+    }
+
+    /**
+     * Gets the names of all of the boards that can be made.
+     * @return the board names
+     */
+    public static synchronized Set<String> getNames() {
+        return factories.keySet();
+    }
+
+    /**
+     * Makes a new empty board by name.
+     * @param name the name of a board, or two names joined with a '+' for a shadow board
+     * @param rows the number of rows of the board
+     * @param columns the number of columns of the board
+     * @return the board
+     */
+    public static synchronized Board createBoard(String name, int rows, int columns) {
+        int plus = name.indexOf('+');
+        if (plus >= 0) {
+            return new ShadowBoard(createBoard(name.substring(0, plus), rows, columns),
+                    createBoard(name.substring(plus + 1), rows, columns));
+        }
+
+        BoardFactory factory = factories.get(name);
+        if (factory == null) {
+            throw new IllegalArgumentException("Unknown board: " + name + " (the boards are " + factories.keySet() + ")");
+        }
+        return factory.create(rows, columns);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,306 @@
+import java.util.Arrays;
+
+/**
+ * A copy of a board's pile that never changes. Snapshots share their rows with each other and with the
+ * Grid they were taken from, which copies a row itself only before it writes to one that is shared.
+ * A snapshot of a Grid shares the grid's tables of chunks of rows, so taking one doesn't copy anything,
+ * and forking a snapshot costs nothing at all: since it can't change, the same snapshot can be handed to
+ * any number of searches.
+ *
+ * place() and addGarbage() make a new snapshot with a block or garbage added, copying only the rows that
+ * change and sharing the rest. A snapshot is a ReadOnlyBoard, so blocks can be moved, rotated and
+ * dropped on it like on any other board, but it has no methods that would change it.
+ */
+public final class BoardSnapshot extends BitBoard {
+    private int top;           //The first stored row; every row above it is empty
+    private byte[][] colors;   //The color of every square of the stored rows, from row top down
+    private long[][] bits;     //The row mask of each stored row
+    private int[] fill;        //The number of filled squares in each stored row
+    private byte[] empty_colors; //The colors of an empty row, shared by every empty row
+    private int rows_cleared;  //The number of rows that were completed by the block that made this snapshot
+    private int[] column_top;  //The column tops, which are found the first time they're asked for
+    private byte[][][] color_chunks; //For a snapshot of a Grid, the grid's chunks of row colors (see Grid.snapshot()); otherwise null
+    private long[][][] bit_chunks;   //For a snapshot of a Grid, the grid's chunks of row masks
+    private int base;                //For a snapshot of a Grid, the slot of row 0 in the chunks
+
+    /**
+     * Copies the pile of any board, one square at a time.
+     * @param board the board
+     */
+    public BoardSnapshot(ReadOnlyBoard board) {
+        super(board.getRows(), board.getColumns());
+
+        top = rows;
+        for (int j = 0; j < columns; j++) {
+            top = Math.min(top, board.getColumnTop(j));
+        }
+        empty_colors = new byte[columns];
+        colors = new byte[rows - top][];
+        bits = new long[rows - top][];
+        fill = new int[rows - top];
+        for (int i = top; i < rows; i++) {
+            byte[] row_colors = new byte[columns];
+            long[] row_bits = wall_row.clone();
+            int row_fill = 0;
+            for (int j = 0; j < columns; j++) {
+                row_colors[j] = board.getColor(i, j);
+                if (row_colors[j] != EMPTY_SQUARE) {
+                    setFilled(row_bits, j);
+                    row_fill++;
+                }
+            }
+            colors[i - top] = row_colors;
+            bits[i - top] = row_bits;
+            fill[i - top] = row_fill;
+        }
+        game_over = board.isGameOver();
+    }
+
+    /**
+     * Makes a snapshot out of rows that are already stored somewhere else. The row arrays become part of
+     * the snapshot, so whoever passes them in must never write to them again.
+     * @param board the board that the rows come from, whose size and wall row are shared
+     * @param top the first stored row
+     * @param colors the colors of the stored rows
+     * @param bits the row masks of the stored rows
+     * @param fill the fill counts of the stored rows
+     * @param game_over true if the game was over
+     */
+    BoardSnapshot(BitBoard board, int top, byte[][] colors, long[][] bits, int[] fill, boolean game_over) {
+        super(board);
+
+        this.top = top;
+        this.colors = colors;
+        this.bits = bits;
+        this.fill = fill;
+        this.game_over = game_over;
+        empty_colors = board instanceof BoardSnapshot ? ((BoardSnapshot) board).empty_colors : new byte[columns];
+    }
+
+    /**
+     * Makes a snapshot that shares the chunks of rows of a Grid, in the grid's own layout, without copying
+     * anything. The grid must copy a table, a chunk or a row before it writes to it again.
+     * @param board the grid, whose size and wall row are shared
+     * @param color_chunks the grid's table of chunks of row colors
+     * @param bit_chunks the grid's table of chunks of row masks
+     * @param base the slot of row 0 in the chunks
+     * @param game_over true if the game was over
+     */
+    BoardSnapshot(BitBoard board, byte[][][] color_chunks, long[][][] bit_chunks, int base, boolean game_over) {
+        super(board);
+
+        this.top = 0;
+        this.color_chunks = color_chunks;
+        this.bit_chunks = bit_chunks;
+        this.base = base;
+        this.game_over = game_over;
+        empty_colors = new byte[columns];
+    }
+
+    /**
+     * Turns a row into its slot in the chunks of a snapshot of a Grid, the same way the grid does.
+     * @param row the row
+     * @return the slot of the row
+     */
+    private int slot(int row) {
+        int slot = base + row;
+        return slot < rows ? slot : slot - rows;
+    }
+
+    /**
+     * Gets the colors of a row. The array belongs to the snapshot and must not be changed.
+     * @param row the row
+     * @return the colors of the row
+     */
+    byte[] getRowColors(int row) {
+        if (row < top) return empty_colors;
+        if (color_chunks != null) {
+            int slot = slot(row);
+            return color_chunks[slot >>> Grid.CHUNK_SHIFT][slot & Grid.CHUNK_MASK];
+        }
+        return colors[row - top];
+    }
+
+    /**
+     * Gets the mask of a row. The array belongs to the snapshot and must not be changed.
+     * @param row the row
+     * @return the row mask, including the walls
+     */
+    long[] getRowBits(int row) {
+        if (row < top) return wall_row;
+        if (bit_chunks != null) {
+            int slot = slot(row);
+            return bit_chunks[slot >>> Grid.CHUNK_SHIFT][slot & Grid.CHUNK_MASK];
+        }
+        return bits[row - top];
+    }
+
+    /**
+     * Gets the number of filled squares in a row. A snapshot of a Grid doesn't keep the fill counts, so
+     * they are counted from the row mask.
+     * @param row the row
+     * @return the fill count of the row
+     */
+    protected int getRowFill(int row) {
+        if (row < top) return 0;
+        if (bit_chunks != null) {
+            long[] row_bits = getRowBits(row);
+            int count = 0;
+            for (int w = 0; w < words; w++) {
+                count += Long.bitCount(row_bits[w] & ~wall_row[w]);
+            }
+            return count;
+        }
+        return fill[row - top];
+    }
+
+    public byte getColor(int row, int column) {
+        return getRowColors(row)[column];
+    }
+
+    protected long rowWord(int row, int word) {
+        if (row < top) return wall_row[word];
+        if (row >= rows) return FULL_WORD;
+        return getRowBits(row)[word];
+    }
+
+    public int getColumnTop(int column) {
+        if (column_top == null) {
+            column_top = new int[columns];
+            for (int j = 0; j < columns; j++) {
+                int i = top;
+                while (i < rows && !isFilled(getRowBits(i), j)) {
+                    i++;
+                }
+                column_top[j] = i;
+            }
+        }
+        return column_top[column];
+    }
+
+    /**
+     * Gets the number of rows that were completed and deleted by the place() that made this snapshot.
+     * @return the number of rows cleared, or 0 for a snapshot that wasn't made by place()
+     */
+    public int getRowsCleared() {
+        return rows_cleared;
+    }
+
+    /**
+     * Makes a new snapshot with a block added to the pile and any rows that it completes deleted, the
+     * way a game would go on after the block locks. Only the rows under the block are copied. The
+     * snapshot doesn't keep the features of the pile; evaluate() the block first to find how it changes
+     * them.
+     * @param block the block, which is expected to be where it would lock
+     * @return the new snapshot
+     */
+    public BoardSnapshot place(Block block) {
+        //Store every row down from the highest square of the block or the pile
+        int new_top = top;
+        for (int i = 0; i < block.getSquareCount(); i++) {
+            new_top = Math.min(new_top, Math.max(block.getSquareY(i), 0));
+        }
+        int count = rows - new_top;
+        byte[][] new_colors = new byte[count][];
+        long[][] new_bits = new long[count][];
+        int[] new_fill = new int[count];
+        for (int i = new_top; i < rows; i++) {
+            new_colors[i - new_top] = getRowColors(i);
+            new_bits[i - new_top] = getRowBits(i);
+            new_fill[i - new_top] = getRowFill(i);
+        }
+
+        boolean over = game_over;
+        for (int i = 0; i < block.getSquareCount(); i++) {
+            int x = block.getSquareX(i);
+            int y = block.getSquareY(i);
+
+            if (endsGame(y, x)) over = true;
+            if (y < 0) continue;
+
+            //Copy a shared row before changing it
+            int k = y - new_top;
+            if (new_colors[k] == getRowColors(y)) {
+                new_colors[k] = new_colors[k].clone();
+                new_bits[k] = new_bits[k].clone();
+            }
+
+            boolean filled = isFilled(new_bits[k], x);
+            if (!filled) new_fill[k]++;
+            new_colors[k][x] = block.getColor();
+            setFilled(new_bits[k], x);
+        }
+
+        //Only the rows that the block landed in can have been completed by it. Every other row moves down
+        //over them, and the rows that open up at the top are empty.
+        int first = Math.max(block.getMaskTop(), new_top);
+        int last = Math.min(block.getMaskTop() + block.getRowMasks().length, rows);
+        int cleared = 0;
+        for (int i = first; i < last; i++) {
+            if (new_fill[i - new_top] == columns) cleared++;
+        }
+        if (cleared > 0) {
+            int to = count - 1;
+            for (int k = count - 1; k >= 0; k--) {
+                int i = k + new_top;
+                if (i >= first && i < last && new_fill[k] == columns) continue;
+
+                new_colors[to] = new_colors[k];
+                new_bits[to] = new_bits[k];
+                new_fill[to] = new_fill[k];
+                to--;
+            }
+            for (int k = 0; k <= to; k++) {
+                new_colors[k] = empty_colors;
+                new_bits[k] = wall_row;
+                new_fill[k] = 0;
+            }
+        }
+
+        BoardSnapshot snapshot = new BoardSnapshot(this, new_top, new_colors, new_bits, new_fill, over);
+        snapshot.rows_cleared = cleared;
+        return snapshot;
+    }
+
+    /**
+     * Makes a new snapshot with garbage rows pushed into the bottom of the pile.
+     * @param count the number of garbage rows
+     * @param hole the column that is left empty in every garbage row
+     * @return the new snapshot
+     */
+    public BoardSnapshot addGarbage(int count, int hole) {
+        checkGarbage(count, hole);
+
+        //Every row moves up by count, and the rows pushed out of the top of the grid are gone
+        boolean over = game_over;
+        int new_top = Math.max(top - count, 0);
+        int stored = rows - new_top;
+        byte[][] new_colors = new byte[stored][];
+        long[][] new_bits = new long[stored][];
+        int[] new_fill = new int[stored];
+        for (int i = new_top; i < rows; i++) {
+            if (i + count < rows) {
+                new_colors[i - new_top] = getRowColors(i + count);
+                new_bits[i - new_top] = getRowBits(i + count);
+                new_fill[i - new_top] = getRowFill(i + count);
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            if (getRowFill(i) != 0) over = true;
+        }
+
+        //The garbage rows are all the same, so they share one row
+        byte[] garbage_colors = new byte[columns];
+        long[] garbage_bits = new long[words];
+        Arrays.fill(garbage_colors, GARBAGE_SQUARE);
+        garbage_colors[hole] = EMPTY_SQUARE;
+        setGarbage(garbage_bits, hole);
+        for (int i = rows - count; i < rows; i++) {
+            new_colors[i - new_top] = garbage_colors;
+            new_bits[i - new_top] = garbage_bits;
+            new_fill[i - new_top] = columns - 1;
+        }
+
+        return new BoardSnapshot(this, new_top, new_colors, new_bits, new_fill, over);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,83 @@
+/**
+ * A queue of commands from one thread to another, like key presses from the AWT event thread to the
+ * game loop. It's a ring buffer for exactly one producer and one consumer: only offer() may be called
+ * from the producing thread and only poll() from the consuming thread. Each side writes just its own
+ * end of the ring, and the volatile ends are all the two threads share, so neither side ever takes a
+ * lock or allocates anything.
+ *
+ * Every command is stamped with the System.nanoTime() that it was offered at, so that the consumer can
+ * take just the commands from before a given time with poll(long).
+ */
+public class CommandQueue<E> {
+    private Object[] commands;
+    private long[] times;
+    private int mask;          // the capacity less one, since the capacity is a power of two
+    private volatile long head; // the number of commands polled so far, only written by the consumer
+    private volatile long tail; // the number of commands offered so far, only written by the producer
+
+    /**
+     * @param capacity the number of commands that can wait in the queue, which must be a power of two
+     */
+    public CommandQueue(int capacity) {
+        if (capacity <= 0 || (capacity & (capacity - 1)) != 0) {
+            throw new IllegalArgumentException("The capacity must be a power of two: " + capacity);
+        }
+        commands = new Object[capacity];
+        times = new long[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Adds a command to the queue. This may only be called from the producing thread.
+     * @param command the command
+     * @return false if the queue was full and the command was dropped, true otherwise
+     */
+    public boolean offer(E command) {
+        if (command == null) {
+            throw new IllegalArgumentException("The command can't be null");
+        }
+
+        long t = tail;
+        if (t - head == commands.length) return false;
+
+        int i = (int) (t & mask);
+        commands[i] = command;
+        times[i] = System.nanoTime();
+        tail = t + 1; // publishes the command to the consumer
+        return true;
+    }
+
+    /**
+     * Takes the oldest command out of the queue. This may only be called from the consuming thread.
+     * @return the command, or null if the queue is empty
+     */
+    public E poll() {
+        long h = head;
+        if (h == tail) return null;
+
+        int i = (int) (h & mask);
+        @SuppressWarnings("unchecked") // only offer(E) puts commands in the ring
+        E command = (E) commands[i];
+        commands[i] = null;
+        head = h + 1; // hands the slot back to the producer
+        return command;
+    }
+
+    /**
+     * Takes the oldest command out of the queue if it was offered before the given time, so that the
+     * consumer can leave commands from after a tick for the ticks that come after it. This may only be
+     * called from the consuming thread.
+     * @param time a System.nanoTime()
+     * @return the command, or null if the queue is empty or its oldest command is from the given time
+     * or later
+     */
+    public E poll(long time) {
+        long h = head;
+        if (h == tail || times[(int) (h & mask)] - time >= 0) return null;
+        return poll();
+    }
+
+    public boolean isEmpty() {
+        return head == tail;
+    }
+}
\ No newline at end of file
@@ -1,15 +1,20 @@
-import java.awt.Color;
-
 public interface DumbloxConstants {
     // all the possible types of blocks in Tetrix
     enum BlockType {O_BLOCK, I_BLOCK, T_BLOCK, L_BLOCK, J_BLOCK, S_BLOCK, Z_BLOCK};
     enum RotateDirection {CLOCKWISE, C_CLOCKWISE};    // possible directions of block rotation
     enum Direction {DOWN, LEFT, RIGHT, UP};
     
+    // the inputs that the game engine accepts on every step (UP and NEXT_TYPE are for testing purposes)
+    enum Input {NONE, LEFT, RIGHT, UP, DOWN, DROP, ROTATE_CLOCKWISE, ROTATE_C_CLOCKWISE, NEXT_TYPE};
+    
     enum GameState {RUNNING, PAUSED, GAME_OVER};
     
     int DEFAULT_FPS = 60;
     
+    // the game runs at a fixed number of ticks per second, whatever the frame rate is
+    int TICKS_PER_SECOND = 60;
+    long TICK_NANOS = 1000000000L / TICKS_PER_SECOND;
+    
     // game speed constants
     int START_SPEED = 11;
     int END_SPEED = 55;
@@ -24,20 +29,19 @@ public interface DumbloxConstants {
     //Panel constants
     int PANEL_WIDTH = 640;
     int PANEL_HEIGHT = 480;
-    Color BACKGROUND_COLOR = Color.black;
     
     //Grid constants
     int GRID_POSITION_X = 220; // the upper left corner (px)
     int GRID_POSITION_Y = 70;
-    int GRID_ROWS = 20;
+    int GRID_ROWS = 20;    // the default grid size, which can be changed on the command line
     int GRID_COLUMNS = 10;
         
     //Square constants
     int SQUARE_SIZE = 20;
     int SQUARE_PADDING = 2;
     
-    //Block constants (in grid coordinates)
-    int ACTIVE_BLOCK_X = GRID_COLUMNS / 2;
+    //Block constants (in grid coordinates). Blocks appear in the middle column of the grid, and the
+    //next block is shown NEXT_BLOCK_X - GRID_COLUMNS columns to the right of the grid.
     int ACTIVE_BLOCK_Y = 0;
     // TODO it'd be nice if the upper left corner of next block was always in the same spot
     int NEXT_BLOCK_X = 15;
@@ -51,9 +55,21 @@ public interface DumbloxConstants {
     int ROWS_CLEARED_X = 80;
     int ROWS_CLEARED_Y = 385;
     
+    //The seed of the random keys that boards and blocks are hashed with (see PileHash)
+    long HASH_SEED = 0x5DEECE66DL;
+    
+    //The number of blocks that can be taken back
+    int MAX_UNDO = 50;
+    
+    //The number of ticks between task profile reports, while profiling is on
+    int PROFILE_REPORT_TICKS = TICKS_PER_SECOND * 10;
+    
     //For row fading
     int NUM_FADE_CYCLES = 60;
     
+    //Opacity of the ghost block that shows where the active block will land
+    float GHOST_ALPHA = 0.3f;
+    
     //Square image files
     String RED_SQUARE = "/images/red2.bmp";
     String BLUE_SQUARE = "/images/blue2.bmp";
@@ -63,6 +79,13 @@ public interface DumbloxConstants {
     String CYAN_SQUARE = "/images/cyan2.bmp";
     String GREY_SQUARE = "/images/grey2.bmp";
     
+    //Square colors as stored in the pile. Color 0 is an empty square and every other color is the
+    //index of its image file in SQUARE_IMAGE_FILES
+    byte EMPTY_SQUARE = 0;
+    byte GARBAGE_SQUARE = 1; // garbage rows use the grey image
+    String[] SQUARE_IMAGE_FILES = {null, GREY_SQUARE, BLUE_SQUARE, CYAN_SQUARE, GREEN_SQUARE,
+            PURPLE_SQUARE, RED_SQUARE, YELLOW_SQUARE};
+    
     String BACKGROUND0 = "/images/background0.png";
     String BACKGROUND1 = "/images/background1.png";
     String BACKGROUND2 = "/images/background2.png";
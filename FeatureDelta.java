@@ -0,0 +1,41 @@
+/**
+ * How the features of a board would change if a block locked where it is and the rows that it completes
+ * were deleted, as worked out by BitBoard.evaluate() without changing the board. Holes and row transitions
+ * are counted the same way as Grid's getTotalHoles() and getRowTransitions(), so adding a delta to those
+ * gives what they would return after the block. A bot can reuse one delta for every placement it rates.
+ */
+public class FeatureDelta {
+    private int holes;        //The change in the number of holes
+    private int transitions;  //The change in the number of row transitions
+    private int rows_cleared; //The number of rows that the block completes
+
+    /**
+     * Sets the delta, for BitBoard.evaluate().
+     */
+    void set(int holes, int transitions, int rows_cleared) {
+        this.holes = holes;
+        this.transitions = transitions;
+        this.rows_cleared = rows_cleared;
+    }
+
+    /**
+     * @return the change in the number of holes
+     */
+    public int getHoles() {
+        return holes;
+    }
+
+    /**
+     * @return the change in the number of row transitions
+     */
+    public int getTransitions() {
+        return transitions;
+    }
+
+    /**
+     * @return the number of rows that the block completes
+     */
+    public int getRowsCleared() {
+        return rows_cleared;
+    }
+}
\ No newline at end of file
@@ -1,121 +1,339 @@
-import java.awt.AlphaComposite;
-import java.awt.Color;
-import java.awt.Graphics2D;
-import java.awt.Point;
 import java.util.ArrayList;
+import java.util.Arrays;
 
-public class Grid implements DumbloxConstants {
-    private Point position; //The position of the grid (specifically, the top left corner) in pixel coordinates
-    private int rows;
-    private int columns;
-    private Graphics2D g;
-    private Square[][] pile;
-    private boolean game_over;
+/**
+ * The standard board, which keeps every row of the grid. The rows are stored in a circular buffer so that
+ * clearing rows and pushing in garbage only moves a few of them.
+ */
+public class Grid extends BitBoard implements Board {
+    private byte[][][] pile;    //The color of every square of the pile, or EMPTY_SQUARE, in chunks of rows (see rowColors())
+    private long[][][] pile_bits; //One bit mask per row of the pile, made of one or more 64-bit words, in chunks like pile
+    private int base;        //The slot of the top row in the row arrays (see slot())
+    private int[] row_fill;  //The number of filled squares in each row of the pile
+    private int[] column_top; //The row of the highest filled square in each column, or rows if it's empty
+    private int[] column_generation; //The generation that each column top was last found in (see getColumnTop())
+    private int[] column_raised;     //The number of garbage rows that had been pushed in at that time
+    private int generation;  //Counts the changes to the grid that move rows around
+    private int raised;      //Counts the garbage rows that have been pushed in
+    private boolean[] row_deleted; //Marks the rows that are being removed by deleteRows
+    private int epoch;             //Counts the snapshots that have been taken of the grid (see ownRow())
+    private int tables_epoch;      //The epoch that the tables of chunks, pile and pile_bits, were copied in
+    private int[] chunk_epoch;     //The epoch that each chunk of row references was copied in
+    private int[] row_epoch;       //The epoch that the arrays of each row were copied in
+    private int[] column_fill;     //The number of filled squares in each column, less full_rows
+    private int full_rows;         //Squares that every column has, kept once here instead of in each column_fill
+    private int[] row_transitions; //The number of row transitions in each row (see getRowTransitions())
+    private int total_transitions; //The sum of row_transitions
+    private long[] row_hash;       //The Zobrist hash of the squares of each row, wherever the row is
+    private long pile_hash;        //The sum that the hash of the whole pile is mixed from (see getHash())
+    private long[] row_powers;     //K^i for each row i, which places a row's hash at that row (see PileHash)
     
-    private AlphaComposite non_transparent; //The default composite for drawing the graphics (non-transparent)
+    //The rows are kept in chunks of CHUNK_ROWS slots, so that a snapshot can share them and the grid
+    //only has to copy the chunks that it changes afterwards
+    static final int CHUNK_SHIFT = 5;
+    static final int CHUNK_ROWS = 1 << CHUNK_SHIFT;
+    static final int CHUNK_MASK = CHUNK_ROWS - 1;
     
-    public Grid(Point position, int rows, int columns, Graphics2D g) {
-        this.position = position;
-        this.rows = rows;
-        this.columns = columns;
-        this.g = g;
-        this.game_over = false;
+    private static final int EMPTY_ROW_TRANSITIONS = 2;   //An empty row only changes at the two walls
+    private static final int GARBAGE_ROW_TRANSITIONS = 2; //A garbage row only changes on both sides of its hole
+    
+    public Grid(int rows, int columns) {
+        super(rows, columns);
         
-        pile = new Square[rows][columns];
-        non_transparent = AlphaComposite.getInstance(AlphaComposite.SRC_OVER);
+        int chunks = (rows + CHUNK_ROWS - 1) >>> CHUNK_SHIFT;
+        pile = new byte[chunks][][];
+        pile_bits = new long[chunks][][];
+        for (int c = 0; c < chunks; c++) {
+            int size = Math.min(CHUNK_ROWS, rows - (c << CHUNK_SHIFT));
+            pile[c] = new byte[size][columns];
+            pile_bits[c] = new long[size][];
+            for (int i = 0; i < size; i++) {
+                pile_bits[c][i] = wall_row.clone();
+            }
+        }
+        base = 0;
+        row_fill = new int[rows];
+        row_deleted = new boolean[rows];
+        epoch = 0;
+        tables_epoch = 0;
+        chunk_epoch = new int[chunks];
+        row_epoch = new int[rows];
+        column_fill = new int[columns];
+        full_rows = 0;
+        row_transitions = new int[rows];
+        Arrays.fill(row_transitions, EMPTY_ROW_TRANSITIONS);
+        total_transitions = rows * EMPTY_ROW_TRANSITIONS;
+        hash_keys = new PileHash(columns);
+        row_powers = new long[rows + 1];
+        row_powers[0] = 1;
+        for (int i = 1; i <= rows; i++) {
+            row_powers[i] = row_powers[i - 1] * hash_keys.getRowPower(1);
+        }
+        row_hash = new long[rows];
+        pile_hash = 0;
+        column_top = new int[columns];
+        Arrays.fill(column_top, rows);
+        column_generation = new int[columns];
+        column_raised = new int[columns];
+        generation = 0;
+        raised = 0;
+    }
+    
+    /**
+     * Gets the color of the square of the pile at the given grid coordinates.
+     * @param row the row of the square
+     * @param column the column of the square
+     * @return the color of the square, or EMPTY_SQUARE if that spot of the pile is empty
+     */
+    public byte getColor(int row, int column) {
+        return rowColors(slot(row))[column];
+    }
+    
+    /**
+     * The rows of the pile are stored in a circular buffer, so that rows can be removed or pushed in
+     * without moving every other row. This turns a row of the grid into its slot in the row arrays.
+     * @param row the row number (between 0 and rows - 1)
+     * @return the slot of the row in pile, pile_bits, row_fill and the other row arrays
+     */
+    private int slot(int row) {
+        int slot = base + row;
+        return slot < rows ? slot : slot - rows;
     }
     
-    public void setGraphics(Graphics2D g) {
-        this.g = g;
+    /**
+     * Gets the colors of the row in a slot. The row references are kept in chunks, so that a snapshot
+     * can share the whole pile by sharing the two tables of chunks.
+     * @param slot the slot of the row
+     * @return the colors of the row, which may be shared with a snapshot (see ownRow())
+     */
+    private byte[] rowColors(int slot) {
+        return pile[slot >>> CHUNK_SHIFT][slot & CHUNK_MASK];
     }
     
     /**
-     * This is the main draw method for the grid.
+     * Gets the mask of the row in a slot.
+     * @param slot the slot of the row
+     * @return the row mask, which may be shared with a snapshot (see ownRow())
      */
-    public void draw() {
-        g.setColor(Color.WHITE);
-        g.draw3DRect(position.x, position.y, columns * SQUARE_SIZE, rows * SQUARE_SIZE, true);
-        drawPile();
+    private long[] rowBits(int slot) {
+        return pile_bits[slot >>> CHUNK_SHIFT][slot & CHUNK_MASK];
     }
     
     /**
-     * Draws a square on the grid. This will be called within public method drawBlock.
-     * @param square the square to be drawn on the grid
+     * Swaps the contents of two rows of the pile.
+     * @param a the first row
+     * @param b the second row
      */
-    private void drawSquare(Square square) {
-        // don't draw squares that are above the grid
-    	if (square.getPosition().y < 0) {
-    		return;
-    	}
-    	
-    	//Translate grid coordinates into window coordinates
-        int x = (square.getPosition().x * SQUARE_SIZE) + position.x;
-        int y = (square.getPosition().y * SQUARE_SIZE) + position.y;
+    private void swapRows(int a, int b) {
+        int slot_a = slot(a);
+        int slot_b = slot(b);
+        
+        int chunk_a = slot_a >>> CHUNK_SHIFT;
+        int chunk_b = slot_b >>> CHUNK_SHIFT;
+        ownChunk(chunk_a);
+        ownChunk(chunk_b);
+        
+        byte[] row = pile[chunk_a][slot_a & CHUNK_MASK];
+        pile[chunk_a][slot_a & CHUNK_MASK] = pile[chunk_b][slot_b & CHUNK_MASK];
+        pile[chunk_b][slot_b & CHUNK_MASK] = row;
+        
+        long[] bits = pile_bits[chunk_a][slot_a & CHUNK_MASK];
+        pile_bits[chunk_a][slot_a & CHUNK_MASK] = pile_bits[chunk_b][slot_b & CHUNK_MASK];
+        pile_bits[chunk_b][slot_b & CHUNK_MASK] = bits;
+        
+        int fill = row_fill[slot_a];
+        row_fill[slot_a] = row_fill[slot_b];
+        row_fill[slot_b] = fill;
         
-        g.setComposite(square.getComposite());
-        g.drawImage(square.getImage(), x + SQUARE_PADDING, y + SQUARE_PADDING, null);
-        g.setComposite(non_transparent);
+        int transitions = row_transitions[slot_a];
+        row_transitions[slot_a] = row_transitions[slot_b];
+        row_transitions[slot_b] = transitions;
+        
+        long hash = row_hash[slot_a];
+        row_hash[slot_a] = row_hash[slot_b];
+        row_hash[slot_b] = hash;
+        
+        int row_stamp = row_epoch[slot_a];
+        row_epoch[slot_a] = row_epoch[slot_b];
+        row_epoch[slot_b] = row_stamp;
     }
     
     /**
-     * Draws a block on the grid.
-     * @param block the block to be drawn on the grid
+     * Makes sure that a chunk of row references belongs to the grid before it is changed. A snapshot
+     * shares the tables of chunks as they were when it was taken, and taking one starts a new epoch, so
+     * anything that was copied in an earlier epoch may be shared and is copied again before it changes.
+     * @param chunk the chunk
      */
-    public void drawBlock(Block block) {
-        for (Square square : block.getSquares()) {
-            drawSquare(square);
+    private void ownChunk(int chunk) {
+        if (tables_epoch != epoch) {
+            pile = pile.clone();
+            pile_bits = pile_bits.clone();
+            tables_epoch = epoch;
+        }
+        if (chunk_epoch[chunk] != epoch) {
+            pile[chunk] = pile[chunk].clone();
+            pile_bits[chunk] = pile_bits[chunk].clone();
+            chunk_epoch[chunk] = epoch;
         }
     }
-        
+    
     /**
-     * Draws the pile to the grid. This method is called by draw.
+     * Makes sure that the arrays of a row belong to the grid before they are changed. The rows of a
+     * snapshot are the grid's own arrays, so a row that has been put in a snapshot (or restored from
+     * one) is copied the first time it changes afterwards, and the snapshot keeps the old one.
+     * @param slot the slot of the row
      */
-    private void drawPile() {
-        for (int i = 0; i < rows; i++) {
-            int y = position.y + (SQUARE_SIZE * i);
-            for (int j = 0; j < columns; j++) {
-                int x = position.x + (SQUARE_SIZE * j);
-                if (pile[i][j] != null) {
-                    g.setComposite(pile[i][j].getComposite());
-                    g.drawImage(pile[i][j].getImage(), x + SQUARE_PADDING, y + SQUARE_PADDING, null);
+    private void ownRow(int slot) {
+        if (row_epoch[slot] != epoch) {
+            int chunk = slot >>> CHUNK_SHIFT;
+            ownChunk(chunk);
+            pile[chunk][slot & CHUNK_MASK] = pile[chunk][slot & CHUNK_MASK].clone();
+            pile_bits[chunk][slot & CHUNK_MASK] = pile_bits[chunk][slot & CHUNK_MASK].clone();
+            row_epoch[slot] = epoch;
+        }
+    }
+    
+    /**
+     * Empties a row of the pile. The squares that were in it are taken off the column fill counts, which
+     * for a full row, the usual case, is one subtraction for every column at once.
+     * @param row the row to be emptied
+     */
+    private void clearRow(int row) {
+        int slot = slot(row);
+        ownRow(slot);
+        if (row_fill[slot] == columns) {
+            full_rows--;
+        }
+        else if (row_fill[slot] != 0) {
+            for (int w = 0; w < words; w++) {
+                long squares = rowBits(slot)[w] & ~wall_row[w];
+                while (squares != 0) {
+                    column_fill[w * Long.SIZE + Long.numberOfTrailingZeros(squares) - 1]--;
+                    squares &= squares - 1;
                 }
             }
         }
-        g.setComposite(non_transparent);
+        Arrays.fill(rowColors(slot), EMPTY_SQUARE);
+        System.arraycopy(wall_row, 0, rowBits(slot), 0, words);
+        row_fill[slot] = 0;
+        row_hash[slot] = 0;
+        total_transitions += EMPTY_ROW_TRANSITIONS - row_transitions[slot];
+        row_transitions[slot] = EMPTY_ROW_TRANSITIONS;
+    }
+    
+    /**
+     * Hashes the squares of a row from scratch.
+     * @param slot the slot of the row
+     * @return the Zobrist hash of the row
+     */
+    private long hashRow(int slot) {
+        long hash = 0;
+        for (int j = 0; j < columns; j++) {
+            hash ^= hash_keys.getSquareKey(j, rowColors(slot)[j]);
+        }
+        return hash;
     }
     
     /**
-     * Adds a block to the pile and deletes any completed rows. This method assumes that the block has already
-     * collided with the pile.
+     * Gets what a range of rows adds to the sum of the pile hash: each row's own hash, which doesn't
+     * depend on where the row is, times the power of K for the row that it's in.
+     * @param first the first row
+     * @param last the row after the last row
+     * @return the rows' part of the sum
+     */
+    private long hashRows(int first, int last) {
+        long sum = 0;
+        for (int i = first; i < last; i++) {
+            sum += row_hash[slot(i)] * row_powers[i];
+        }
+        return sum;
+    }
+    
+    /**
+     * Gets a 64-bit hash of the pile, for transposition tables, finding repeated positions and checking
+     * that two copies of a game haven't drifted apart. The hash is kept up to date as the pile changes:
+     * adding a block only hashes the squares that it adds, deleting rows only hashes again the shorter
+     * side of the rows that move, and garbage only hashes the rows that it pushes in (see PileHash). It
+     * is the same as any other board with the same squares would work out from scratch.
+     * @return the hash of the pile
+     */
+    public long getHash() {
+        return PileHash.mix(pile_hash);
+    }
+    
+    /**
+     * Counts the row transitions of a row mask: the number of times that a filled square is next to an
+     * empty one, going across the row from wall to wall. The walls count as filled, so an empty row has
+     * two transitions and a full row has none. Each word is compared with itself shifted by one bit.
+     * @param bits the row mask
+     * @return the number of transitions
+     */
+    private int countTransitions(long[] bits) {
+        int transitions = 0;
+        for (int w = 0; w < words; w++) {
+            //Everything past the last word is the right wall
+            long next = w + 1 < words ? bits[w + 1] : FULL_WORD;
+            transitions += Long.bitCount(bits[w] ^ ((bits[w] >>> 1) | (next << (Long.SIZE - 1))));
+        }
+        return transitions;
+    }
+    
+    /**
+     * Counts the row transitions of a row again after it has changed.
+     * @param slot the slot of the row
+     */
+    private void updateTransitions(int slot) {
+        total_transitions -= row_transitions[slot];
+        row_transitions[slot] = countTransitions(rowBits(slot));
+        total_transitions += row_transitions[slot];
+    }
+    
+    protected long rowWord(int row, int word) {
+        if (row < 0) return wall_row[word];
+        if (row >= rows) return FULL_WORD;
+        return rowBits(slot(row))[word];
+    }
+    
+    /**
+     * Adds a block to the pile and finds any completed rows. This method assumes that the block has already
+     * collided with the pile. Only the rows that the block covers are checked, using the fill count of
+     * each row, so the cost doesn't depend on the height of the grid.
      * @param block the block that will be added to the pile
-     * @retrun a list of the completed rows
+     * @return a list of the completed rows. The same list is reused by the next call to this method.
      */
     public ArrayList<Integer> addBlockToPile(Block block) {
-        for (Square square : block.getSquares()) {
-            Point position = square.getPosition();
+        for (int i = 0; i < block.getSquareCount(); i++) {
+            int x = block.getSquareX(i);
+            int y = block.getSquareY(i);
             
-            // check if the game should be over
-            if (position.y == 0 && pile[position.y][position.x] != null) game_over = true;
+            if (endsGame(y, x)) game_over = true;
+            if (y < 0) continue;
             
-            // add the square to the pile
-            pile[position.y][position.x] = square;
-        }
-        
-        ArrayList<Integer> completed_rows = new ArrayList<Integer>();
-        for (int i = 0; i < pile.length; i++) {
-            boolean row_complete = true;
+            int slot = slot(y);
+            ownRow(slot);
+            byte[] colors = rowColors(slot);
+            long[] bits = rowBits(slot);
+            boolean filled = isFilled(bits, x);
             
-            for (Square square : pile[i]) {
-                if (square == null) {
-                    row_complete = false;
-                    break;
-                }
+            // add the square to the pile, swapping the old square's key for the new one's in the row hash
+            long old_hash = row_hash[slot];
+            row_hash[slot] ^= hash_keys.getSquareKey(x, colors[x]) ^ hash_keys.getSquareKey(x, block.getColor());
+            pile_hash += (row_hash[slot] - old_hash) * row_powers[y];
+            if (!filled) {
+                row_fill[slot]++;
+                column_fill[x]++;
+                
+                //Filling an empty square only changes the transitions on either side of it
+                int transitions = (isFilled(bits, x - 1) ? -1 : 1) + (isFilled(bits, x + 1) ? -1 : 1);
+                row_transitions[slot] += transitions;
+                total_transitions += transitions;
             }
-            
-            if (row_complete) completed_rows.add(new Integer(i));
+            colors[x] = block.getColor();
+            setFilled(bits, x);
+            if (y < getColumnTop(x)) column_top[x] = y;
         }
         
-        return completed_rows;
+        return findCompletedRows(block);
     }
     
     /**
@@ -123,87 +341,332 @@ public class Grid implements DumbloxConstants {
      * @param row_list the list of integers representing the rows that will be deleted from the pile.
      */
     public void deleteRows(ArrayList<Integer> row_list) {
-        if (!row_list.isEmpty()) {
-            for (Integer i : row_list) {
-                deleteRow(i.intValue());
+        if (row_list.isEmpty()) return;
+        
+        int count = row_list.size();
+        int highest = rows;
+        int lowest = -1;
+        for (int i = 0; i < count; i++) {
+            int row = row_list.get(i).intValue();
+            row_deleted[row] = true;
+            highest = Math.min(highest, row);
+            lowest = Math.max(lowest, row);
+        }
+        
+        //The rows below the lowest deleted row stay where they are, and the rows above the highest one
+        //all move down by count, which multiplies their part of the hash by K^count. Only the shorter of
+        //those two sides is hashed; the other side's part is what's left of the sum.
+        long middle = hashRows(highest, lowest + 1);
+        long above;
+        long below;
+        if (highest <= rows - 1 - lowest) {
+            above = hashRows(0, highest);
+            below = pile_hash - above - middle;
+        }
+        else {
+            below = hashRows(lowest + 1, rows);
+            above = pile_hash - below - middle;
+        }
+        
+        /* Compact the pile in a single pass, swapping every kept row into the next free spot so that the
+         * deleted rows all bubble to one end, where they are emptied and reused as the new rows. Only the
+         * rows on one side of the deleted rows have to move, so pick the shorter side:
+         */
+        if (lowest + 1 <= rows - highest) {
+            //Move the rows above the deleted rows down. The deleted rows end up at the top of the grid.
+            int free = lowest;
+            for (int i = lowest; i >= 0; i--) {
+                if (row_deleted[i]) {
+                    row_deleted[i] = false;
+                }
+                else {
+                    if (free != i) swapRows(free, i);
+                    free--;
+                }
+            }
+            
+            for (int i = 0; i < count; i++) {
+                clearRow(i);
+            }
+        }
+        else {
+            //Move the rows below the deleted rows up. The deleted rows end up at the bottom of the grid, and
+            //moving the base back turns them into the top rows while every row above them falls into place.
+            int free = highest;
+            for (int i = highest; i < rows; i++) {
+                if (row_deleted[i]) {
+                    row_deleted[i] = false;
+                }
+                else {
+                    if (free != i) swapRows(free, i);
+                    free++;
+                }
+            }
+            
+            base = slot(rows - count);
+            for (int i = 0; i < count; i++) {
+                clearRow(i);
             }
         }
+        
+        //The rows that were between the deleted rows end up just above the rows below them
+        pile_hash = below + above * row_powers[count] + hashRows(highest + count, lowest + 1);
+        
+        //The column tops are brought up to date when they're asked for
+        generation++;
     }
     
     /**
-     * Deletes a row from the pile.
-     * @param num the row to be deleted
+     * Cascade gravity: after rows have been deleted, every cluster of squares that touch each other
+     * falls on its own until it lands (see BitBoard.findClusterDrops()). The rows that the clusters fell
+     * through are written back with their hashes and transitions worked out again.
+     * @return a list of the rows that are full after everything has landed. The same list is reused by
+     * addBlockToPile.
      */
-    private void deleteRow(int num) {
-        //Create a new grid array
-        Square[][] new_pile = new Square[rows][columns];
-
-        //First, move all of the rows above the deleted row down one
-        for (int i = 1; i <= num; i++) {
-            for (int j = 0; j < columns; j++) {
-                new_pile[i][j] = pile[i - 1][j];
+    public ArrayList<Integer> dropClusters() {
+        int top = getPileTop();
+        if (findClusterDrops(top)) {
+            //Squares only moved down their own columns, so the column fill counts haven't changed, and
+            //the column tops are found again when they're asked for
+            pile_hash -= hashRows(top, rows);
+            for (int i = top; i < rows; i++) {
+                int slot = slot(i);
+                ownRow(slot);
+                System.arraycopy(wall_row, 0, rowBits(slot), 0, words);
+                row_fill[slot] = 0;
+                for (int j = 0; j < columns; j++) {
+                    rowColors(slot)[j] = getDroppedColor(i, j);
+                    if (rowColors(slot)[j] != EMPTY_SQUARE) {
+                        setFilled(rowBits(slot), j);
+                        row_fill[slot]++;
+                    }
+                }
+                row_hash[slot] = hashRow(slot);
+                updateTransitions(slot);
             }
+            pile_hash += hashRows(top, rows);
+            generation++;
         }
+        return findCompletedRows(top, rows);
+    }
+    
+    protected boolean isRowFull(int row) {
+        return row_fill[slot(row)] == columns;
+    }
+    
+    protected int getRowFill(int row) {
+        return row_fill[slot(row)];
+    }
+    
+    /**
+     * Pushes garbage rows into the bottom of the pile, moving the whole pile up. Each garbage row is
+     * filled except for one column. If the pile is pushed out of the top of the grid, the game is over.
+     * @param count the number of garbage rows
+     * @param hole the column that is left empty in every garbage row
+     */
+    public void addGarbageRows(int count, int hole) {
+        checkGarbage(count, hole);
         
-        //Now copy the rest of the rows
-        for (int i = num + 1; i < rows; i++) {
-            for (int j = 0; j < columns; j++) {
-                new_pile[i][j] = pile[i][j];
+        //The rows pushed out of the top of the grid leave the hash, and every other row moves up by count,
+        //which divides its part of the hash by K^count
+        pile_hash = (pile_hash - hashRows(0, count)) * hash_keys.getInverseRowPower(count);
+        long garbage_hash = hash_keys.getGarbageHash(hole);
+        
+        //Advancing the base moves every row up; the top rows wrap around to become the new bottom rows
+        base = slot(count % rows);
+        for (int i = rows - count; i < rows; i++) {
+            int slot = slot(i);
+            if (row_fill[slot] != 0) {
+                //The row was pushed out of the top of the grid
+                game_over = true;
+                clearRow(i);
             }
+            
+            ownRow(slot);
+            Arrays.fill(rowColors(slot), GARBAGE_SQUARE);
+            rowColors(slot)[hole] = EMPTY_SQUARE;
+            setGarbage(rowBits(slot), hole);
+            row_fill[slot] = columns - 1;
+            row_hash[slot] = garbage_hash;
+            pile_hash += garbage_hash * row_powers[i];
+            total_transitions += GARBAGE_ROW_TRANSITIONS - row_transitions[slot];
+            row_transitions[slot] = GARBAGE_ROW_TRANSITIONS;
         }
         
-        pile = new_pile;
+        full_rows += count;
+        column_fill[hole] -= count;
+        
+        //The column tops are brought up to date when they're asked for
+        generation++;
+        raised += count;
     }
     
     /**
-     * This method determines if a given block is colliding with another square in the pile or
-     * a wall of the grid. This method is used for collision detection for rotating and moving a block.
-     * It is assumed that the block that is passed in is already rotated/moved in the tentative direction
-     * so that this method does not need to simulate the movement/rotation itself.
-     * @param block the block whose collision is being detected
-     * @return true if the block collides, false otherwise
+     * Gets the row of the highest filled square in a column. Deleting rows and pushing in garbage don't
+     * update the column tops, which would cost a little for every column of a wide grid. Instead, a column
+     * top that is out of date is found again here. Since then, rows have only moved down, except for the
+     * garbage rows that pushed everything up, so the top is found by looking down from the old top moved
+     * up by the garbage.
+     * @param column the column
+     * @return the row of the highest square, or the number of rows if the column is empty
      */
-    public boolean collides(Block block) {
-        for (Square square : block.getSquares()) {
-            Point position = square.getPosition();
-            
-            //Check if the square collides with a wall
-            if (position.x < 0                  //collides with left wall
-                    || position.x > columns - 1 //collides with right wall
-                    || position.y > rows - 1) { //collides with bottom
-                return true;
-            }
-            
-            //If the square is located above the grid, then this square is not colliding.
-            //This could happen when the piece first appears and the user rotates it.
-            if (position.y >= 0) {
-                //Check if the square collides with the pile
-                if (pile[position.y][position.x] != null) {
-                    return true;
-                }
+    public int getColumnTop(int column) {
+        if (column_generation[column] != generation) {
+            int top = Math.max(column_top[column] - (raised - column_raised[column]), 0);
+            while (top < rows && !isFilled(rowBits(slot(top)), column)) {
+                top++;
             }
+            column_top[column] = top;
+            column_generation[column] = generation;
+            column_raised[column] = raised;
         }
-        return false;
+        return column_top[column];
+    }
+    
+    /*
+     * Board features for analytics and for bots that rate placements. The counts that need the whole pile
+     * (the filled squares of each column and the transitions of each row) are kept up to date as squares
+     * are added and rows are removed, and the rest come from those and the column tops, so none of these
+     * look at the squares of the pile.
+     */
+    
+    /**
+     * Gets the height of a column above the floor.
+     * @param column the column
+     * @return the number of rows from the floor up to and including the highest filled square
+     */
+    public int getColumnHeight(int column) {
+        return rows - getColumnTop(column);
     }
     
     /**
-     * Sets the alpha composite for each of the squares in each of the rows specified in the list of rows.
-     * @param rows contains the row numbers that will be faded
-     * @param alpha_composite the alpha composite number (between 0.0 and 1.0), which controls the transparency
+     * Gets the height of the highest column.
+     * @return the height of the pile
      */
-    public void fadeRows(ArrayList<Integer> rows, float alpha_composite) {
-        for (Integer row : rows) {
-            for (Square square : pile[row.intValue()]) {
-                square.setComposite(alpha_composite);
-            }
+    public int getMaxHeight() {
+        int max = 0;
+        for (int j = 0; j < columns; j++) {
+            max = Math.max(max, getColumnHeight(j));
+        }
+        return max;
+    }
+    
+    /**
+     * Counts the holes in a column: the empty squares that are under its highest filled square.
+     * @param column the column
+     * @return the number of holes
+     */
+    public int getHoles(int column) {
+        return getColumnHeight(column) - (column_fill[column] + full_rows);
+    }
+    
+    /**
+     * Counts the holes in every column.
+     * @return the total number of holes
+     */
+    public int getTotalHoles() {
+        int holes = 0;
+        for (int j = 0; j < columns; j++) {
+            holes += getHoles(j);
+        }
+        return holes;
+    }
+    
+    /**
+     * Gets the depth of the well in a column: how far it is below the lower of the columns next to it.
+     * The walls count as being as high as the grid.
+     * @param column the column
+     * @return the depth of the well, or 0 if the column isn't lower than both of its neighbors
+     */
+    public int getWellDepth(int column) {
+        int left = column > 0 ? getColumnHeight(column - 1) : rows;
+        int right = column < columns - 1 ? getColumnHeight(column + 1) : rows;
+        return Math.max(Math.min(left, right) - getColumnHeight(column), 0);
+    }
+    
+    /**
+     * Adds up the differences in height between each pair of columns next to each other.
+     * @return the bumpiness of the pile
+     */
+    public int getBumpiness() {
+        int bumpiness = 0;
+        int height = getColumnHeight(0);
+        for (int j = 1; j < columns; j++) {
+            int next = getColumnHeight(j);
+            bumpiness += Math.abs(next - height);
+            height = next;
         }
+        return bumpiness;
+    }
+    
+    /**
+     * Gets the number of row transitions in a row: the number of times that a filled square is next to
+     * an empty one, going across the row. The walls count as filled, so an empty row has two.
+     * @param row the row
+     * @return the number of transitions
+     */
+    public int getRowTransitions(int row) {
+        return row_transitions[slot(row)];
     }
     
     /**
-     * Is the game over or not? Tell me!
-     * @return true if the game is over; false otherwise
+     * Gets the number of row transitions in every row of the grid.
+     * @return the total number of row transitions
      */
-    public boolean isGameOver() {
-    	return game_over;
+    public int getRowTransitions() {
+        return total_transitions;
+    }
+    
+    /**
+     * Takes a snapshot of the pile. The snapshot shares the grid's tables of chunks instead of copying
+     * anything, and starting a new epoch makes the grid copy each table, chunk and row the next time it
+     * changes it (see ownChunk() and ownRow()). So this costs the same whatever the size of the grid, and
+     * the grid only copies the few rows and chunks that the next block touches.
+     * @return the snapshot
+     */
+    public BoardSnapshot snapshot() {
+        epoch++;
+        return new BoardSnapshot(this, pile, pile_bits, base, game_over);
+    }
+    
+    /**
+     * Puts the pile back the way it was in a snapshot. The grid takes the snapshot's rows without copying
+     * them, and copies each one the next time it changes it, but the features are counted again over the
+     * whole pile. To rate a placement, evaluate() it instead of locking the block and restoring.
+     * @param snapshot the snapshot, which must be the same size as the grid
+     */
+    public void restore(BoardSnapshot snapshot) {
+        if (snapshot.getRows() != rows || snapshot.getColumns() != columns) {
+            throw new IllegalArgumentException("The snapshot isn't the same size as the grid");
+        }
+        
+        //The rows go into chunks that belong to the grid, but are still marked as shared with the snapshot
+        base = 0;
+        for (int i = 0; i < rows; i++) {
+            ownChunk(i >>> CHUNK_SHIFT);
+            pile[i >>> CHUNK_SHIFT][i & CHUNK_MASK] = snapshot.getRowColors(i);
+            pile_bits[i >>> CHUNK_SHIFT][i & CHUNK_MASK] = snapshot.getRowBits(i);
+            row_fill[i] = snapshot.getRowFill(i);
+            row_epoch[i] = epoch - 1;
+        }
+        game_over = snapshot.isGameOver();
+        
+        //Count the features of the restored pile from scratch
+        Arrays.fill(column_fill, 0);
+        full_rows = 0;
+        total_transitions = 0;
+        for (int i = 0; i < rows; i++) {
+            row_transitions[i] = countTransitions(rowBits(i));
+            total_transitions += row_transitions[i];
+            for (int j = 0; j < columns; j++) {
+                if (rowColors(i)[j] != EMPTY_SQUARE) column_fill[j]++;
+            }
+            row_hash[i] = hashRow(i);
+        }
+        pile_hash = hashRows(0, rows);
+        
+        //Every column top is found again from the top of the grid
+        Arrays.fill(column_top, 0);
+        generation++;
     }
 }
@@ -0,0 +1,65 @@
+/**
+ * The questions that can be asked of a board without changing it: what is in each square, where the top
+ * of each column is and whether a block fits. Blocks are moved, rotated and dropped against a
+ * ReadOnlyBoard, so they work the same on a live Board and on a BoardSnapshot, which can't be changed
+ * at all. Rows are numbered from 0 at the top to getRows() - 1 at the bottom, and columns from 0 on the
+ * left.
+ */
+public interface ReadOnlyBoard {
+    /**
+     * Gets the number of rows in the board.
+     * @return the number of rows
+     */
+    public int getRows();
+
+    /**
+     * Gets the number of columns in the board.
+     * @return the number of columns
+     */
+    public int getColumns();
+
+    /**
+     * Gets the color of the square of the pile at the given grid coordinates.
+     * @param row the row of the square
+     * @param column the column of the square
+     * @return the color of the square, or EMPTY_SQUARE if that spot of the pile is empty
+     */
+    public byte getColor(int row, int column);
+
+    /**
+     * Determines if a block is colliding with a square of the pile, a wall or the floor. The block is
+     * expected to already be in the position that is being tried out.
+     * @param block the block whose collision is being detected
+     * @return true if the block collides, false otherwise
+     */
+    public boolean collides(Block block);
+
+    /**
+     * Gets the row of the highest filled square in a column.
+     * @param column the column
+     * @return the row of the highest square, or the number of rows if the column is empty
+     */
+    public int getColumnTop(int column);
+
+    /**
+     * Finds how far a block can fall before it lands on the pile or the floor.
+     * @param block the block that is falling
+     * @return the number of rows the block can move down
+     */
+    public int dropDistance(Block block);
+
+    /**
+     * Gets a 64-bit hash of the pile, for transposition tables, finding repeated positions and checking
+     * that two copies of a game haven't drifted apart. Every board with the same size and the same
+     * squares has the same hash (see PileHash), but only Grid keeps it up to date as the pile changes;
+     * the other boards work it out from the squares of the pile each time.
+     * @return the hash of the pile
+     */
+    public long getHash();
+
+    /**
+     * Is the game over or not? Tell me!
+     * @return true if the game is over; false otherwise
+     */
+    public boolean isGameOver();
+}
\ No newline at end of file
@@ -0,0 +1,173 @@
+import java.util.ArrayList;
+
+/**
+ * Runs two boards in lockstep: every call goes to both of them and their answers are compared. The
+ * primary board's answers are the ones that are used, and the game stops with an IllegalStateException
+ * as soon as the shadow board disagrees. This is for trying out a new board against one that is known
+ * to work, so it is slower than either of them on its own.
+ */
+public class ShadowBoard implements Board {
+    private Board primary;
+    private Board shadow;
+
+    public ShadowBoard(Board primary, Board shadow) {
+        if (primary.getRows() != shadow.getRows() || primary.getColumns() != shadow.getColumns()) {
+            throw new IllegalArgumentException("The primary and shadow boards must be the same size");
+        }
+
+        this.primary = primary;
+        this.shadow = shadow;
+    }
+
+    public Board getPrimary() {
+        return primary;
+    }
+
+    public Board getShadow() {
+        return shadow;
+    }
+
+    /**
+     * Stops the game because the two boards gave different answers.
+     * @param method the name of the method that was called
+     * @param expected the primary board's answer
+     * @param actual the shadow board's answer
+     */
+    private void diverged(String method, Object expected, Object actual) {
+        throw new IllegalStateException(method + " diverged: " + primary.getClass().getName() + " returned "
+                + expected + " but " + shadow.getClass().getName() + " returned " + actual);
+    }
+
+    /**
+     * Compares the column tops and game over state of the boards, which is cheap enough to do after
+     * every change.
+     * @param method the name of the method that changed the boards
+     */
+    private void checkState(String method) {
+        if (primary.isGameOver() != shadow.isGameOver()) {
+            diverged(method + ": isGameOver", primary.isGameOver(), shadow.isGameOver());
+        }
+        for (int j = 0; j < primary.getColumns(); j++) {
+            if (primary.getColumnTop(j) != shadow.getColumnTop(j)) {
+                diverged(method + ": getColumnTop(" + j + ")", primary.getColumnTop(j), shadow.getColumnTop(j));
+            }
+        }
+    }
+
+    /**
+     * Compares every square of some of the rows of the boards.
+     * @param method the name of the method that changed the boards
+     * @param top the first row to compare
+     * @param bottom the row after the last row to compare
+     */
+    private void checkRows(String method, int top, int bottom) {
+        for (int i = Math.max(top, 0); i < Math.min(bottom, primary.getRows()); i++) {
+            for (int j = 0; j < primary.getColumns(); j++) {
+                if (primary.getColor(i, j) != shadow.getColor(i, j)) {
+                    diverged(method + ": getColor(" + i + ", " + j + ")", primary.getColor(i, j), shadow.getColor(i, j));
+                }
+            }
+        }
+    }
+
+    public int getRows() {
+        return primary.getRows();
+    }
+
+    public int getColumns() {
+        return primary.getColumns();
+    }
+
+    public byte getColor(int row, int column) {
+        byte color = primary.getColor(row, column);
+        byte shadow_color = shadow.getColor(row, column);
+        if (color != shadow_color) diverged("getColor(" + row + ", " + column + ")", color, shadow_color);
+        return color;
+    }
+
+    public ArrayList<Integer> addBlockToPile(Block block) {
+        ArrayList<Integer> completed_rows = primary.addBlockToPile(block);
+        ArrayList<Integer> shadow_rows = shadow.addBlockToPile(block);
+        if (!completed_rows.equals(shadow_rows)) diverged("addBlockToPile", completed_rows, shadow_rows);
+
+        //Only the rows under the block have changed
+        checkRows("addBlockToPile", block.getMaskTop(), block.getMaskTop() + block.getRowMasks().length);
+        checkState("addBlockToPile");
+        return completed_rows;
+    }
+
+    public void deleteRows(ArrayList<Integer> row_list) {
+        //The list might be the one that the primary board reuses, so give the shadow board its own copy
+        ArrayList<Integer> shadow_rows = new ArrayList<Integer>(row_list);
+        primary.deleteRows(row_list);
+        shadow.deleteRows(shadow_rows);
+
+        checkRows("deleteRows", 0, primary.getRows());
+        checkState("deleteRows");
+    }
+
+    public void addGarbageRows(int count, int hole) {
+        primary.addGarbageRows(count, hole);
+        shadow.addGarbageRows(count, hole);
+
+        checkRows("addGarbageRows", 0, primary.getRows());
+        checkState("addGarbageRows");
+    }
+
+    public ArrayList<Integer> dropClusters() {
+        ArrayList<Integer> completed_rows = primary.dropClusters();
+        ArrayList<Integer> shadow_rows = shadow.dropClusters();
+        if (!completed_rows.equals(shadow_rows)) diverged("dropClusters", completed_rows, shadow_rows);
+
+        checkRows("dropClusters", 0, primary.getRows());
+        checkState("dropClusters");
+        return completed_rows;
+    }
+
+    public boolean collides(Block block) {
+        boolean collides = primary.collides(block);
+        boolean shadow_collides = shadow.collides(block);
+        if (collides != shadow_collides) diverged("collides", collides, shadow_collides);
+        return collides;
+    }
+
+    public int getColumnTop(int column) {
+        int top = primary.getColumnTop(column);
+        int shadow_top = shadow.getColumnTop(column);
+        if (top != shadow_top) diverged("getColumnTop(" + column + ")", top, shadow_top);
+        return top;
+    }
+
+    public int dropDistance(Block block) {
+        int distance = primary.dropDistance(block);
+        int shadow_distance = shadow.dropDistance(block);
+        if (distance != shadow_distance) diverged("dropDistance", distance, shadow_distance);
+        return distance;
+    }
+
+    public long getHash() {
+        long hash = primary.getHash();
+        long shadow_hash = shadow.getHash();
+        if (hash != shadow_hash) diverged("getHash", Long.toHexString(hash), Long.toHexString(shadow_hash));
+        return hash;
+    }
+
+    public BoardSnapshot snapshot() {
+        return primary.snapshot();
+    }
+
+    public void restore(BoardSnapshot snapshot) {
+        primary.restore(snapshot);
+        shadow.restore(snapshot);
+
+        checkRows("restore", 0, primary.getRows());
+        checkState("restore");
+    }
+
+    public boolean isGameOver() {
+        boolean game_over = primary.isGameOver();
+        boolean shadow_game_over = shadow.isGameOver();
+        if (game_over != shadow_game_over) diverged("isGameOver", game_over, shadow_game_over);
+        return game_over;
+    }
+}
\ No newline at end of file
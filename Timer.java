@@ -1,64 +1,466 @@
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
 
+/**
+ * Runs tasks after a number of ticks. The tasks are kept in a hashed timing wheel: a ring of slots, one
+ * per tick, where each task waits in the slot of the tick that it's due on (modulo the size of the
+ * wheel). A tick only looks at the tasks in its own slot, so its cost depends on the tasks that are due
+ * and not on how many tasks are scheduled. A task that is due more than a full turn of the wheel away
+ * just waits in its slot while the wheel goes around, and tasks that are turned off aren't in the wheel.
+ *
+ * Tasks can be scheduled under a name, which replaces any task that already has it and lets the task be
+ * found with get(), or without one, in which case the task itself is the only handle on it.
+ *
+ * Tasks that are due on the same tick run in the order that they went into the wheel. A task goes in
+ * when it is scheduled, again each time it repeats (after its run on the tick before), and when it is
+ * turned back on. Names play no part in the order, and a repeating task goes to the back each time it
+ * runs, so tasks that need to run in a set order on the same tick should be one task.
+ *
+ * When profiling is on, the timer times every run of every task and keeps the numbers in a TaskProfile
+ * for each task. A tick that is given the time it was scheduled for (see tick(long)) also counts how
+ * many ticks of the length that profiling was turned on with it started after that time, which is
+ * charged to the tasks that run in it. When profiling is off, all a tick does about it is check one
+ * field.
+ *
+ * Async tasks (see AsyncTask) do their work on the timer's executor, and the workers hand them back
+ * through a queue of finished tasks, which each tick empties. They finish on the game thread in tick(),
+ * on their tick like any other task, so the tasks never run anything on another thread that the game can
+ * see. A tick that an async task is due on before its work has come back waits for it.
+ */
 public class Timer {
-    private LinkedHashMap<String, Task> taskmap;
-    
+    private static final int WHEEL_SIZE = 256; // a power of two, so the slot of a tick is a mask away
+
+    private LinkedHashMap<String, Task<?>> taskmap;
+    private Task<?>[] wheel;  // the first task in each slot; the tasks in a slot are linked through Task.next
+    private Task<?>[] wheel_tail; // the last task in each slot
+    private long now;      // the number of ticks so far
+    private ArrayList<Task<?>> due_tasks; // reused by tick() for the tasks that are due
+
+    private Executor executor; // runs the work of async tasks, made when it's first needed
+    private LinkedBlockingQueue<AsyncTask<?>> finished_tasks; // async tasks whose work is done, from the workers
+
+    private long tick_nanos;  // the length of a tick while profiling is on, or 0 when it's off
+    private LinkedHashMap<String, TaskProfile> profiles;
+
     public Timer() {
-        taskmap = new LinkedHashMap<String, Task>();
+        taskmap = new LinkedHashMap<String, Task<?>>();
+        wheel = new Task<?>[WHEEL_SIZE];
+        wheel_tail = new Task<?>[WHEEL_SIZE];
+        now = 0;
+        due_tasks = new ArrayList<Task<?>>();
+        finished_tasks = new LinkedBlockingQueue<AsyncTask<?>>();
+        tick_nanos = 0;
+        profiles = new LinkedHashMap<String, TaskProfile>();
     }
-    
+
     /**
-     * Add a task to the task list.
+     * Add a task to the task list. A task that is already scheduled under the same name is replaced.
      * @param task the task to be added to the task list.
+     * @return the task, which is also the handle for turning it on and off or cancelling it
      */
-    public void schedule(String name, Task task) {
-        taskmap.put(name, task);
+    public <T> Task<T> schedule(String name, Task<T> task) {
+        if (name == null) {
+            throw new IllegalArgumentException("A named task needs a name");
+        }
+        add(name, task);
+        return task;
     }
-    
+
+    /**
+     * Add a task to the task list without a name, for tasks that are only ever reached through the
+     * task itself.
+     * @param task the task to be added to the task list.
+     * @return the task, which is also the handle for turning it on and off or cancelling it
+     */
+    public <T> Task<T> schedule(Task<T> task) {
+        add(null, task);
+        return task;
+    }
+
+    private void add(String name, Task<?> task) {
+        if (task.owner != null && task.owner != this) {
+            throw new IllegalArgumentException("The task " + name + " is scheduled in another timer");
+        }
+        if (task.owner == this) cancel(task);
+        if (name != null) {
+            Task<?> old = taskmap.put(name, task);
+            if (old != null) cancel(old);
+        }
+
+        task.owner = this;
+        task.name = name;
+        task.profile = null;
+        task.remaining = task.getTicks();
+        if (task.on()) resume(task);
+    }
+
     /**
      * This method is used to access tasks by their name.
      * @param name - the name of the task to get
      * @return the task associated with the given name
      */
-    public Task get(String name) {
+    public Task<?> get(String name) {
         return taskmap.get(name);
     }
-    
+
     /**
-     * This method tells the timer to turn off all of the tasks that aren't in the specified list.
+     * This method tells the timer to turn off all of the named tasks that aren't in the specified list.
+     * Tasks without a name are left alone.
      * @param names - the list of tasks that will be on (with all of the other tasks being turned off)
      * @return the list of names of tasks that were "on" before this method was called
      */
     public ArrayList<String> keepOnly(ArrayList<String> names) {
         ArrayList<String> previous_state = new ArrayList<String>();
-        for (String name : taskmap.keySet()) {
-            if (taskmap.get(name).on()) {
-                previous_state.add(name);
+        HashSet<String> keep = new HashSet<String>(names);
+        for (Map.Entry<String, Task<?>> entry : taskmap.entrySet()) {
+            if (entry.getValue().on()) {
+                previous_state.add(entry.getKey());
             }
-            if (names.contains(name)) {
-                taskmap.get(name).turnOn();
+            if (keep.contains(entry.getKey())) {
+                entry.getValue().turnOn();
             }
             else {
-                taskmap.get(name).turnOff();
+                entry.getValue().turnOff();
             }
         }
         return previous_state;
     }
-    
+
     /**
-     * Counts one tick of time by calling the tick() method on every task in the task list.
-     * If a particular task's scheduled time has come, then it will run itself during it's tick() method.
+     * Counts one tick of time and runs the tasks that are due. A task can schedule other tasks while it
+     * runs; they start counting on the next tick. Tasks that are due on the same tick run in the order
+     * that they went into the wheel (see above). The tick isn't counted as late while profiling.
      */
     public void tick() {
-        LinkedHashMap<String, Task> new_map = new LinkedHashMap<String, Task>(taskmap);
-        
-        for (String name : taskmap.keySet()) {
-            if (!taskmap.get(name).tick()) {
-                new_map.remove(name);
+        tick(0);
+    }
+
+    /**
+     * Counts one tick of time and runs the tasks that are due, like tick(), for a tick that was meant to
+     * run at the given time. While profiling, each whole tick that it starts after that time is counted
+     * as a late tick for the tasks that run in it, so the ticks that a game loop runs to catch up after
+     * a stall are each as late as they really are.
+     * @param time the System.nanoTime() that the tick was scheduled for, or 0 if it has none
+     */
+    public void tick(long time) {
+        now++;
+
+        long late = 0;
+        if (tick_nanos != 0 && time != 0) {
+            late = Math.max((System.nanoTime() - time) / tick_nanos, 0);
+        }
+
+        //Take in the async tasks whose work has come back, so that their ticks don't have to wait
+        AsyncTask<?> finished;
+        while ((finished = finished_tasks.poll()) != null) {
+            finished.received = true;
+        }
+
+        //Take the due tasks out of the slot before running any of them, since running a task can change
+        //the slot
+        int slot = slot(now);
+        for (Task<?> task = wheel[slot]; task != null; task = task.next) {
+            if (task.due == now) due_tasks.add(task);
+        }
+        for (int i = 0; i < due_tasks.size(); i++) {
+            unlink(due_tasks.get(i));
+        }
+
+        for (int i = 0; i < due_tasks.size(); i++) {
+            Task<?> task = due_tasks.get(i);
+
+            //An earlier task may have turned this one off or replaced it
+            if (task.owner != this || !task.on() || task.due != now) continue;
+
+            boolean repeat = fire(task, late);
+            if (task.owner != this || isLinked(task)) {
+                //The task was replaced or scheduled again while it ran
+                continue;
+            }
+            if (!repeat) {
+                cancel(task);
+            }
+            else if (task.on()) {
+                link(task, now + Math.max(task.getTicks(), 1));
+            }
+            else {
+                //The task turned itself off, so it starts a full count down when it's turned on again
+                task.remaining = task.getTicks();
+            }
+        }
+        due_tasks.clear();
+    }
+
+    /**
+     * Runs a task once, timing it if profiling is on. An async task whose work hasn't come back yet is
+     * waited for first, and the wait is added to its late ticks.
+     * @param task the task
+     * @param late the number of ticks that the current tick is late by
+     * @return false if the task has no more repeats left, true otherwise
+     */
+    private boolean fire(Task<?> task, long late) {
+        if (task instanceof AsyncTask) late += awaitWork((AsyncTask<?>) task);
+        if (tick_nanos == 0) return task.fire();
+
+        if (task.profile == null) task.profile = getProfileFor(task);
+        long start = System.nanoTime();
+        boolean repeat = task.fire();
+        task.profile.record(System.nanoTime() - start, late);
+        return repeat;
+    }
+
+    /**
+     * Starts an async task: its work is handed to the executor straight away, and it finishes in a
+     * later tick (see AsyncTask). The task isn't named; it is its own handle.
+     * @param task the task, which can't have been started before
+     * @return the task
+     */
+    public <T> AsyncTask<T> runAsync(final AsyncTask<T> task) {
+        task.start();
+        add(null, task);
+
+        getExecutor().execute(new Runnable() {
+            public void run() {
+                try {
+                    task.execute();
+                }
+                finally {
+                    finished_tasks.add(task); // even after an Error, so that the tick waiting for it goes on
+                }
+            }
+        });
+        return task;
+    }
+
+    /**
+     * Waits for the work of an async task to come back through the queue of finished tasks, taking in
+     * any other tasks that come back before it.
+     * @param task the task
+     * @return the number of ticks that the wait took while profiling, counting part of a tick as one, or
+     * 0 if there was no wait or profiling is off
+     */
+    private long awaitWork(AsyncTask<?> task) {
+        if (task.received) return 0;
+
+        long start = System.nanoTime();
+        boolean interrupted = false;
+        while (!task.received) {
+            try {
+                finished_tasks.take().received = true;
+            }
+            catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+
+        if (tick_nanos == 0) return 0;
+        return (System.nanoTime() - start + tick_nanos - 1) / tick_nanos;
+    }
+
+    /**
+     * Sets the executor that runs the work of async tasks. A Java 21 virtual thread executor can be
+     * passed in here.
+     * @param executor the executor
+     */
+    public void setExecutor(Executor executor) {
+        if (executor == null) {
+            throw new IllegalArgumentException("The executor can't be null");
+        }
+        this.executor = executor;
+    }
+
+    /**
+     * Gets the executor that runs the work of async tasks. If none was set, a pool of daemon threads is
+     * made the first time it's needed, so a timer that never runs async tasks never starts a thread.
+     * @return the executor
+     */
+    public Executor getExecutor() {
+        if (executor == null) {
+            executor = Executors.newCachedThreadPool(new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "Timer worker");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return executor;
+    }
+
+    /**
+     * Turns profiling on or off. The profiles that have been kept so far are kept when profiling is
+     * turned off, and added to if it's turned on again.
+     * @param tick_nanos how long a tick is meant to take in nanoseconds, which is used for counting
+     * late ticks, or 0 to turn profiling off
+     */
+    public void setProfiling(long tick_nanos) {
+        if (tick_nanos < 0) {
+            throw new IllegalArgumentException("Invalid tick length: " + tick_nanos);
+        }
+        this.tick_nanos = tick_nanos;
+    }
+
+    public boolean isProfiling() {
+        return tick_nanos != 0;
+    }
+
+    /**
+     * Gets the profile of the tasks with the given label.
+     * @param label the name that the tasks were scheduled under, or the name of their class if they
+     * were scheduled without one
+     * @return the profile, or null if no task with that label has run while profiling was on
+     */
+    public TaskProfile getProfile(String label) {
+        return profiles.get(label);
+    }
+
+    /**
+     * Gets every profile, in the order that their tasks first ran.
+     * @return the profiles
+     */
+    public ArrayList<TaskProfile> getProfiles() {
+        return new ArrayList<TaskProfile>(profiles.values());
+    }
+
+    /**
+     * Clears the numbers in every profile, for example at the start of each report period.
+     */
+    public void resetProfiles() {
+        for (TaskProfile profile : profiles.values()) {
+            profile.reset();
+        }
+    }
+
+    /**
+     * Formats the profiles as a report with one line per task, the slowest first.
+     * @return the report
+     */
+    public String getProfileReport() {
+        ArrayList<TaskProfile> sorted = getProfiles();
+        Collections.sort(sorted, new Comparator<TaskProfile>() {
+            public int compare(TaskProfile a, TaskProfile b) {
+                return a.getTotalNanos() < b.getTotalNanos() ? 1 : a.getTotalNanos() > b.getTotalNanos() ? -1 : 0;
             }
+        });
+
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("%-32s %8s %13s %13s %13s %8s%n", "task", "runs", "total", "average", "max", "late"));
+        for (int i = 0; i < sorted.size(); i++) {
+            report.append(sorted.get(i)).append(String.format("%n"));
+        }
+        return report.toString();
+    }
+
+    /**
+     * Finds the profile that a task's runs are added to, making it if it's the first run of its label.
+     * @param task the task
+     * @return the profile
+     */
+    private TaskProfile getProfileFor(Task<?> task) {
+        String label = task.name != null ? task.name : task.getClass().getName();
+        TaskProfile profile = profiles.get(label);
+        if (profile == null) {
+            profile = new TaskProfile(label);
+            profiles.put(label, profile);
         }
+        return profile;
+    }
 
-        taskmap = new_map;
+    /**
+     * Gets the number of ticks so far.
+     * @return the current tick
+     */
+    public long getTick() {
+        return now;
+    }
+
+    /**
+     * Puts a task that was turned off back into the wheel, with the ticks it had left.
+     * @param task the task
+     */
+    void resume(Task<?> task) {
+        link(task, now + Math.max(task.remaining, 1));
+    }
+
+    /**
+     * Takes a task that is being turned off out of the wheel, remembering how many ticks it had left.
+     * @param task the task
+     */
+    void pause(Task<?> task) {
+        task.remaining = (int) (task.due - now);
+        unlink(task);
+    }
+
+    /**
+     * Takes a task out of the timer for good.
+     * @param task the task
+     */
+    void cancel(Task<?> task) {
+        unlink(task);
+        if (task.name != null && taskmap.get(task.name) == task) {
+            taskmap.remove(task.name);
+        }
+        task.owner = null;
+    }
+
+    private boolean isLinked(Task<?> task) {
+        return task.prev != null || wheel[slot(task.due)] == task;
+    }
+
+    private int slot(long tick) {
+        return (int) (tick & (WHEEL_SIZE - 1));
+    }
+
+    /**
+     * Adds a task to the end of the slot of the tick that it's due on.
+     * @param task the task, which must not be in the wheel
+     * @param due the tick that the task is due on
+     */
+    private void link(Task<?> task, long due) {
+        int slot = slot(due);
+        task.due = due;
+        task.next = null;
+        task.prev = wheel_tail[slot];
+        if (wheel_tail[slot] != null) {
+            wheel_tail[slot].next = task;
+        }
+        else {
+            wheel[slot] = task;
+        }
+        wheel_tail[slot] = task;
+    }
+
+    /**
+     * Takes a task out of its slot, if it's in one.
+     * @param task the task
+     */
+    private void unlink(Task<?> task) {
+        int slot = slot(task.due);
+        if (task.prev != null) {
+            task.prev.next = task.next;
+        }
+        else if (wheel[slot] == task) {
+            wheel[slot] = task.next;
+        }
+        else {
+            return; // not in the wheel
+        }
+        if (task.next != null) {
+            task.next.prev = task.prev;
+        }
+        else {
+            wheel_tail[slot] = task.prev;
+        }
+        task.prev = null;
+        task.next = null;
     }
 }
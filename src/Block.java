@@ -1,229 +1,252 @@
-import java.awt.*;
-
 public class Block implements DumbloxConstants {
     private static final int MAX_SQUARES = 4;
-    private BlockType block_type;   // this block's type
-    private Square rotations[][];   // 2D array of all possible rotations for this block
-    private int rotation_index = 0; // the index of the current rotation
-    
-    /**
-     * Block constructor. Initialize the rotations array.
-     * @param grid_position - the position of the "center" Square of the Block
-     *                        (ie. the Square about which the Block rotates)
-     * @param block_type - the type of Block this is
+
+    /* The offsets of each square from the "center" square of the block (the square about which the block
+     * rotates), indexed by [block type][rotation]. Each rotation holds MAX_SQUARES (dx, dy) pairs.
      */
-    public Block (Point grid_pos, BlockType block_type) {
-        this.block_type = block_type;
-        
-        // based on the BlockType, create the block with all of its possible rotations
-        switch (block_type) {
-        case O_BLOCK:
-            rotations = new Square[1][4];
-            /* rotations[0]
-             * [0][1]
+    private static final int[][][] SHAPES = {
+        { // O_BLOCK
+            /* [0][1]
              * [2][3]
              */
-            rotations[0][0] = new Square(new Point(grid_pos.x, grid_pos.y), DumbloxPanel.GREY_IMAGE, GREY_SQUARE);
-            rotations[0][1] = new Square(new Point(grid_pos.x + 1, grid_pos.y), DumbloxPanel.GREY_IMAGE, GREY_SQUARE);
-            rotations[0][2] = new Square(new Point(grid_pos.x, grid_pos.y + 1), DumbloxPanel.GREY_IMAGE, GREY_SQUARE);
-            rotations[0][3] = new Square(new Point(grid_pos.x + 1, grid_pos.y + 1), DumbloxPanel.GREY_IMAGE, GREY_SQUARE);
-            break;
-        case I_BLOCK:
-            rotations = new Square[2][4];
-            /* rotations[0]
-             * [0][1][2][3]
+            {0, 0,  1, 0,  0, 1,  1, 1}
+        },
+        { // I_BLOCK
+            /* [0][1][2][3]
              */
-            rotations[0][0] = new Square(new Point(grid_pos.x - 2, grid_pos.y), DumbloxPanel.BLUE_IMAGE, BLUE_SQUARE);
-            rotations[0][1] = new Square(new Point(grid_pos.x - 1, grid_pos.y), DumbloxPanel.BLUE_IMAGE, BLUE_SQUARE);
-            rotations[0][2] = new Square(new Point(grid_pos.x, grid_pos.y), DumbloxPanel.BLUE_IMAGE, BLUE_SQUARE);
-            rotations[0][3] = new Square(new Point(grid_pos.x + 1, grid_pos.y), DumbloxPanel.BLUE_IMAGE, BLUE_SQUARE);
-            
-            /* rotations[1]
-             *    [0]
+            {-2, 0,  -1, 0,  0, 0,  1, 0},
+            /*    [0]
              *    [1]
              *    [2]
              *    [3]
              */
-            rotations[1][0] = new Square(new Point(grid_pos.x, grid_pos.y - 2), DumbloxPanel.BLUE_IMAGE, BLUE_SQUARE);
-            rotations[1][1] = new Square(new Point(grid_pos.x, grid_pos.y - 1), DumbloxPanel.BLUE_IMAGE, BLUE_SQUARE);
-            rotations[1][2] = new Square(new Point(grid_pos.x, grid_pos.y), DumbloxPanel.BLUE_IMAGE, BLUE_SQUARE);
-            rotations[1][3] = new Square(new Point(grid_pos.x, grid_pos.y + 1), DumbloxPanel.BLUE_IMAGE, BLUE_SQUARE);
-            break;
-        case T_BLOCK:
-            rotations = new Square[4][4];
-            /* rotations[0]
-             * [3][2][1]
+            {0, -2,  0, -1,  0, 0,  0, 1}
+        },
+        { // T_BLOCK
+            /* [3][2][1]
              *    [0]
              */
-            rotations[0][0] = new Square(new Point(grid_pos.x, grid_pos.y + 1), DumbloxPanel.CYAN_IMAGE, CYAN_SQUARE);
-            rotations[0][1] = new Square(new Point(grid_pos.x + 1, grid_pos.y), DumbloxPanel.CYAN_IMAGE, CYAN_SQUARE);
-            rotations[0][2] = new Square(new Point(grid_pos.x, grid_pos.y), DumbloxPanel.CYAN_IMAGE, CYAN_SQUARE);
-            rotations[0][3] = new Square(new Point(grid_pos.x - 1, grid_pos.y), DumbloxPanel.CYAN_IMAGE, CYAN_SQUARE);
-            
-            /* rotations[1]
-             *    [3]
+            {0, 1,  1, 0,  0, 0,  -1, 0},
+            /*    [3]
              * [0][2]
              *    [1]
              */
-            rotations[1][0] = new Square(new Point(grid_pos.x - 1, grid_pos.y), DumbloxPanel.CYAN_IMAGE, CYAN_SQUARE);
-            rotations[1][1] = new Square(new Point(grid_pos.x, grid_pos.y + 1), DumbloxPanel.CYAN_IMAGE, CYAN_SQUARE);
-            rotations[1][2] = new Square(new Point(grid_pos.x, grid_pos.y), DumbloxPanel.CYAN_IMAGE, CYAN_SQUARE);
-            rotations[1][3] = new Square(new Point(grid_pos.x, grid_pos.y - 1), DumbloxPanel.CYAN_IMAGE, CYAN_SQUARE);
-            
-            /* rotations[2]
-             *    [0]
+            {-1, 0,  0, 1,  0, 0,  0, -1},
+            /*    [0]
              * [1][2][3]
              */
-            rotations[2][0] = new Square(new Point(grid_pos.x, grid_pos.y - 1), DumbloxPanel.CYAN_IMAGE, CYAN_SQUARE);
-            rotations[2][1] = new Square(new Point(grid_pos.x - 1, grid_pos.y), DumbloxPanel.CYAN_IMAGE, CYAN_SQUARE);
-            rotations[2][2] = new Square(new Point(grid_pos.x, grid_pos.y), DumbloxPanel.CYAN_IMAGE, CYAN_SQUARE);
-            rotations[2][3] = new Square(new Point(grid_pos.x + 1, grid_pos.y), DumbloxPanel.CYAN_IMAGE, CYAN_SQUARE);
-            
-            /* rotations[3]
-             *    [1]
+            {0, -1,  -1, 0,  0, 0,  1, 0},
+            /*    [1]
              *    [2][0]
              *    [3]
              */
-            rotations[3][0] = new Square(new Point(grid_pos.x + 1, grid_pos.y), DumbloxPanel.CYAN_IMAGE, CYAN_SQUARE);
-            rotations[3][1] = new Square(new Point(grid_pos.x, grid_pos.y - 1), DumbloxPanel.CYAN_IMAGE, CYAN_SQUARE);
-            rotations[3][2] = new Square(new Point(grid_pos.x, grid_pos.y), DumbloxPanel.CYAN_IMAGE, CYAN_SQUARE);
-            rotations[3][3] = new Square(new Point(grid_pos.x, grid_pos.y + 1), DumbloxPanel.CYAN_IMAGE, CYAN_SQUARE);
-            break;
-        case L_BLOCK:
-            rotations = new Square[4][4];
-            /* rotations[0]
-             * [3][2][1]
+            {1, 0,  0, -1,  0, 0,  0, 1}
+        },
+        { // L_BLOCK
+            /* [3][2][1]
              * [0]
              */
-            rotations[0][0] = new Square(new Point(grid_pos.x - 1, grid_pos.y + 1), DumbloxPanel.GREEN_IMAGE, GREEN_SQUARE);
-            rotations[0][1] = new Square(new Point(grid_pos.x + 1, grid_pos.y), DumbloxPanel.GREEN_IMAGE, GREEN_SQUARE);
-            rotations[0][2] = new Square(new Point(grid_pos.x, grid_pos.y), DumbloxPanel.GREEN_IMAGE, GREEN_SQUARE);
-            rotations[0][3] = new Square(new Point(grid_pos.x - 1, grid_pos.y), DumbloxPanel.GREEN_IMAGE, GREEN_SQUARE);
-            
-            /* rotations[1]
-             * [0][3]
+            {-1, 1,  1, 0,  0, 0,  -1, 0},
+            /* [0][3]
              *    [2]
              *    [1]
              */
-            rotations[1][0] = new Square(new Point(grid_pos.x - 1, grid_pos.y - 1), DumbloxPanel.GREEN_IMAGE, GREEN_SQUARE);
-            rotations[1][1] = new Square(new Point(grid_pos.x, grid_pos.y + 1), DumbloxPanel.GREEN_IMAGE, GREEN_SQUARE);
-            rotations[1][2] = new Square(new Point(grid_pos.x, grid_pos.y), DumbloxPanel.GREEN_IMAGE, GREEN_SQUARE);
-            rotations[1][3] = new Square(new Point(grid_pos.x, grid_pos.y - 1), DumbloxPanel.GREEN_IMAGE, GREEN_SQUARE);
-            
-            /* rotations[2]
-             *       [0]
+            {-1, -1,  0, 1,  0, 0,  0, -1},
+            /*       [0]
              * [1][2][3]
              */
-            rotations[2][0] = new Square(new Point(grid_pos.x + 1, grid_pos.y - 1), DumbloxPanel.GREEN_IMAGE, GREEN_SQUARE);
-            rotations[2][1] = new Square(new Point(grid_pos.x - 1, grid_pos.y), DumbloxPanel.GREEN_IMAGE, GREEN_SQUARE);
-            rotations[2][2] = new Square(new Point(grid_pos.x, grid_pos.y), DumbloxPanel.GREEN_IMAGE, GREEN_SQUARE);
-            rotations[2][3] = new Square(new Point(grid_pos.x + 1, grid_pos.y), DumbloxPanel.GREEN_IMAGE, GREEN_SQUARE);
-            
-            /* rotations[3]
-             *    [1]
+            {1, -1,  -1, 0,  0, 0,  1, 0},
+            /*    [1]
              *    [2]
              *    [3][0]
              */
-            rotations[3][0] = new Square(new Point(grid_pos.x + 1, grid_pos.y + 1), DumbloxPanel.GREEN_IMAGE, GREEN_SQUARE);
-            rotations[3][1] = new Square(new Point(grid_pos.x, grid_pos.y - 1), DumbloxPanel.GREEN_IMAGE, GREEN_SQUARE);
-            rotations[3][2] = new Square(new Point(grid_pos.x, grid_pos.y), DumbloxPanel.GREEN_IMAGE, GREEN_SQUARE);
-            rotations[3][3] = new Square(new Point(grid_pos.x, grid_pos.y + 1), DumbloxPanel.GREEN_IMAGE, GREEN_SQUARE);
-            break;
-        case J_BLOCK:
-            rotations = new Square[4][4];
-            /* rotations[0]
-             * [3][2][1]
+            {1, 1,  0, -1,  0, 0,  0, 1}
+        },
+        { // J_BLOCK
+            /* [3][2][1]
              *       [0]
              */
-            rotations[0][0] = new Square(new Point(grid_pos.x + 1, grid_pos.y + 1), DumbloxPanel.PURPLE_IMAGE, PURPLE_SQUARE);
-            rotations[0][1] = new Square(new Point(grid_pos.x + 1, grid_pos.y), DumbloxPanel.PURPLE_IMAGE, PURPLE_SQUARE);
-            rotations[0][2] = new Square(new Point(grid_pos.x, grid_pos.y), DumbloxPanel.PURPLE_IMAGE, PURPLE_SQUARE);
-            rotations[0][3] = new Square(new Point(grid_pos.x - 1, grid_pos.y), DumbloxPanel.PURPLE_IMAGE, PURPLE_SQUARE);
-            
-            /* rotations[1]
-             *    [3]
+            {1, 1,  1, 0,  0, 0,  -1, 0},
+            /*    [3]
              *    [2]
              * [0][1]
              */
-            rotations[1][0] = new Square(new Point(grid_pos.x - 1, grid_pos.y + 1), DumbloxPanel.PURPLE_IMAGE, PURPLE_SQUARE);
-            rotations[1][1] = new Square(new Point(grid_pos.x, grid_pos.y + 1), DumbloxPanel.PURPLE_IMAGE, PURPLE_SQUARE);
-            rotations[1][2] = new Square(new Point(grid_pos.x, grid_pos.y), DumbloxPanel.PURPLE_IMAGE, PURPLE_SQUARE);
-            rotations[1][3] = new Square(new Point(grid_pos.x, grid_pos.y - 1), DumbloxPanel.PURPLE_IMAGE, PURPLE_SQUARE);
-            
-            /* rotations[2]
-             * [0]
+            {-1, 1,  0, 1,  0, 0,  0, -1},
+            /* [0]
              * [1][2][3]
              */
-            rotations[2][0] = new Square(new Point(grid_pos.x - 1, grid_pos.y - 1), DumbloxPanel.PURPLE_IMAGE, PURPLE_SQUARE);
-            rotations[2][1] = new Square(new Point(grid_pos.x - 1, grid_pos.y), DumbloxPanel.PURPLE_IMAGE, PURPLE_SQUARE);
-            rotations[2][2] = new Square(new Point(grid_pos.x, grid_pos.y), DumbloxPanel.PURPLE_IMAGE, PURPLE_SQUARE);
-            rotations[2][3] = new Square(new Point(grid_pos.x + 1, grid_pos.y), DumbloxPanel.PURPLE_IMAGE, PURPLE_SQUARE);
-            
-            /* rotations[3]
-             *    [1][0]
+            {-1, -1,  -1, 0,  0, 0,  1, 0},
+            /*    [1][0]
              *    [2]
              *    [3]
              */
-            rotations[3][0] = new Square(new Point(grid_pos.x + 1, grid_pos.y - 1), DumbloxPanel.PURPLE_IMAGE, PURPLE_SQUARE);
-            rotations[3][1] = new Square(new Point(grid_pos.x, grid_pos.y - 1), DumbloxPanel.PURPLE_IMAGE, PURPLE_SQUARE);
-            rotations[3][2] = new Square(new Point(grid_pos.x, grid_pos.y), DumbloxPanel.PURPLE_IMAGE, PURPLE_SQUARE);
-            rotations[3][3] = new Square(new Point(grid_pos.x, grid_pos.y + 1), DumbloxPanel.PURPLE_IMAGE, PURPLE_SQUARE);
-            break;
-        case S_BLOCK:
-            rotations = new Square[2][4];
-            /* rotations[0]
-             *    [0][1]
+            {1, -1,  0, -1,  0, 0,  0, 1}
+        },
+        { // S_BLOCK
+            /*    [0][1]
              * [2][3]
              */
-            rotations[0][0] = new Square(new Point(grid_pos.x, grid_pos.y), DumbloxPanel.RED_IMAGE, RED_SQUARE);
-            rotations[0][1] = new Square(new Point(grid_pos.x + 1, grid_pos.y), DumbloxPanel.RED_IMAGE, RED_SQUARE);
-            rotations[0][2] = new Square(new Point(grid_pos.x - 1, grid_pos.y + 1), DumbloxPanel.RED_IMAGE, RED_SQUARE);
-            rotations[0][3] = new Square(new Point(grid_pos.x, grid_pos.y + 1), DumbloxPanel.RED_IMAGE, RED_SQUARE);
-            
-            /* rotations[1]
-             *    [2]
+            {0, 0,  1, 0,  -1, 1,  0, 1},
+            /*    [2]
              *    [3][0]
              *       [1]
              */
-            rotations[1][0] = new Square(new Point(grid_pos.x + 1, grid_pos.y), DumbloxPanel.RED_IMAGE, RED_SQUARE);
-            rotations[1][1] = new Square(new Point(grid_pos.x + 1, grid_pos.y + 1), DumbloxPanel.RED_IMAGE, RED_SQUARE);
-            rotations[1][2] = new Square(new Point(grid_pos.x, grid_pos.y - 1), DumbloxPanel.RED_IMAGE, RED_SQUARE);
-            rotations[1][3] = new Square(new Point(grid_pos.x, grid_pos.y), DumbloxPanel.RED_IMAGE, RED_SQUARE);
-            break;
-        case Z_BLOCK:
-            rotations = new Square[2][4];
-            /* rotations[0]
-             * [0][1]
+            {1, 0,  1, 1,  0, -1,  0, 0}
+        },
+        { // Z_BLOCK
+            /* [0][1]
              *    [2][3]
              */
-            rotations[0][0] = new Square(new Point(grid_pos.x - 1, grid_pos.y), DumbloxPanel.YELLOW_IMAGE, YELLOW_SQUARE);
-            rotations[0][1] = new Square(new Point(grid_pos.x, grid_pos.y), DumbloxPanel.YELLOW_IMAGE, YELLOW_SQUARE);
-            rotations[0][2] = new Square(new Point(grid_pos.x, grid_pos.y + 1), DumbloxPanel.YELLOW_IMAGE, YELLOW_SQUARE);
-            rotations[0][3] = new Square(new Point(grid_pos.x + 1, grid_pos.y + 1), DumbloxPanel.YELLOW_IMAGE, YELLOW_SQUARE);
-            
-            /* rotations[1]
-             *       [0]
+            {-1, 0,  0, 0,  0, 1,  1, 1},
+            /*       [0]
              *    [2][1]
              *    [3]
              */
-            rotations[1][0] = new Square(new Point(grid_pos.x + 1, grid_pos.y - 1), DumbloxPanel.YELLOW_IMAGE, YELLOW_SQUARE);
-            rotations[1][1] = new Square(new Point(grid_pos.x + 1, grid_pos.y), DumbloxPanel.YELLOW_IMAGE, YELLOW_SQUARE);
-            rotations[1][2] = new Square(new Point(grid_pos.x, grid_pos.y), DumbloxPanel.YELLOW_IMAGE, YELLOW_SQUARE);
-            rotations[1][3] = new Square(new Point(grid_pos.x, grid_pos.y + 1), DumbloxPanel.YELLOW_IMAGE, YELLOW_SQUARE);
-            break;
-        default:
-            System.out.println("Random number generator picked an invalid BlockType");
+            {1, -1,  1, 0,  0, 0,  0, 1}
+        }
+    };
+
+    /* The same shapes as row masks for collision detection, indexed by [block type][rotation][row]. Bit 0
+     * of a mask is the leftmost column of the shape (SHAPE_LEFT) and row 0 is its topmost row (SHAPE_TOP).
+     */
+    private static final int[][][] ROW_MASKS = new int[SHAPES.length][][];
+    private static final int[][] SHAPE_LEFT = new int[SHAPES.length][];
+    private static final int[][] SHAPE_TOP = new int[SHAPES.length][];
+
+    static {
+        for (int type = 0; type < SHAPES.length; type++) {
+            int num_rotations = SHAPES[type].length;
+            ROW_MASKS[type] = new int[num_rotations][];
+            SHAPE_LEFT[type] = new int[num_rotations];
+            SHAPE_TOP[type] = new int[num_rotations];
+
+            for (int rotation = 0; rotation < num_rotations; rotation++) {
+                int[] shape = SHAPES[type][rotation];
+                int left = Integer.MAX_VALUE, top = Integer.MAX_VALUE, bottom = Integer.MIN_VALUE;
+                for (int i = 0; i < MAX_SQUARES; i++) {
+                    left = Math.min(left, shape[2 * i]);
+                    top = Math.min(top, shape[2 * i + 1]);
+                    bottom = Math.max(bottom, shape[2 * i + 1]);
+                }
+
+                int[] masks = new int[bottom - top + 1];
+                for (int i = 0; i < MAX_SQUARES; i++) {
+                    masks[shape[2 * i + 1] - top] |= 1 << (shape[2 * i] - left);
+                }
+
+                ROW_MASKS[type][rotation] = masks;
+                SHAPE_LEFT[type][rotation] = left;
+                SHAPE_TOP[type][rotation] = top;
+            }
         }
     }
-    
+
+    private BlockType block_type;   // this block's type
+    private int[][] rotations;      // the shape table entries of all possible rotations for this block
+    private int rotation_index = 0; // the index of the current rotation
+    private int[] row_masks;        // the row masks, left and top of the current rotation, which are looked
+    private int shape_left;         // up whenever the rotation changes so that collision checks don't
+    private int shape_top;          // have to go through the shape tables
+    private int x;                  // the grid position of the "center" Square of the Block
+    private int y;
+
+    /**
+     * Block constructor. The block only remembers its position and rotation; its shape comes from the
+     * shared shape tables, so creating or moving a block doesn't create any Squares.
+     * @param x - the column of the "center" Square of the Block
+     *            (ie. the Square about which the Block rotates)
+     * @param y - the row of the "center" Square of the Block
+     * @param block_type - the type of Block this is
+     */
+    public Block(int x, int y, BlockType block_type) {
+        reset(x, y, block_type);
+    }
+
+    /**
+     * Turns this block into a new block in its spawn rotation, so the same object can be
+     * reused for every block of a game.
+     * @param x - the column of the "center" Square of the Block
+     * @param y - the row of the "center" Square of the Block
+     * @param block_type - the type of Block this is
+     */
+    public void reset(int x, int y, BlockType block_type) {
+        this.block_type = block_type;
+        this.rotations = SHAPES[block_type.ordinal()];
+        this.rotation_index = 0;
+        this.x = x;
+        this.y = y;
+        updateShape();
+    }
+
+    /**
+     * Looks up the row masks of the current rotation.
+     */
+    private void updateShape() {
+        int type = block_type.ordinal();
+        row_masks = ROW_MASKS[type][rotation_index];
+        shape_left = SHAPE_LEFT[type][rotation_index];
+        shape_top = SHAPE_TOP[type][rotation_index];
+    }
+
+    /**
+     * get the number of squares in a block
+     * @return the number of squares
+     */
+    public int getSquareCount() {
+        return MAX_SQUARES;
+    }
+
+    /**
+     * get the column of one of the squares of the current rotation
+     * @param i - the index of the square
+     * @return the column of the square in grid coordinates
+     */
+    public int getSquareX(int i) {
+        return x + rotations[rotation_index][2 * i];
+    }
+
+    /**
+     * get the row of one of the squares of the current rotation
+     * @param i - the index of the square
+     * @return the row of the square in grid coordinates
+     */
+    public int getSquareY(int i) {
+        return y + rotations[rotation_index][2 * i + 1];
+    }
+
+    /**
+     * get the row masks of the current rotation. Bit 0 of each mask is the column returned by
+     * getMaskLeft() and the first mask is the row returned by getMaskTop(). The array is shared
+     * between blocks, so it must not be modified.
+     * @return the row masks of the current rotation
+     */
+    public int[] getRowMasks() {
+        return row_masks;
+    }
+
+    /**
+     * @return the column of the leftmost squares of the current rotation
+     */
+    public int getMaskLeft() {
+        return x + shape_left;
+    }
+
     /**
-     * get all the squares of the current rotation
-     * @return the squares of the current rotation
+     * @return the row of the topmost squares of the current rotation
      */
-    public Square[] getSquares() {
-        return rotations[rotation_index];
+    public int getMaskTop() {
+        return y + shape_top;
     }
-    
+
+    /**
+     * get the color of the squares of this block. Every block type has its own color,
+     * which is an index into SQUARE_IMAGE_FILES.
+     * @return the color of the block
+     */
+    public byte getColor() {
+        return (byte) (block_type.ordinal() + 1);
+    }
+
     /**
      * rotate() simulates a block rotation merely by incrementing
      * or decrementing the index of the rotations array.
@@ -232,9 +255,9 @@ public class Block implements DumbloxConstants {
      *                           to the user-pressed key
      * @return true if the rotation was successful; false otherwise
      */
-    public boolean rotate(Grid grid, RotateDirection rotate_direction) {
+    public boolean rotate(ReadOnlyBoard grid, RotateDirection rotate_direction) {
         int index = rotation_index;
-        
+
         switch (rotate_direction) {
         case CLOCKWISE:
             // rotate the block clockwise
@@ -247,73 +270,58 @@ public class Block implements DumbloxConstants {
         default:
             System.out.println("Unknown rotation direction");
         }
-        
+        updateShape();
+
         /* Check the Grid to see if this new rotation causes a collision with a wall or
          * the pile of Squares at the bottom. If collision, then revert the rotation_index
          * back to index and return false
          */
         if (grid.collides(this)) {
             rotation_index = index;
+            updateShape();
             return false;
         }
-        
+
         return true;
     }
-    
+
     /**
-     * move the Block by calling move() on the Squares
+     * move the Block by moving its center
      * @param grid - Grid obj containing info on the walls/pile of Squares
      * @param direction - the direction of movement corresponding to the
      *                    key the user pressed
      * @return true if the move was succesful; false otherwise
      */
-    public boolean move(Grid grid, Direction direction) {
-        for (int i = 0; i < rotations.length; i++) {
-            for (int j = 0; j < MAX_SQUARES; j++) {
-                rotations[i][j].move(direction);
-            }
-        }
-        
-        // Check the Grid for collisions and move everything back if true
-        if (grid.collides(this)) {
-            // undo the move
-            unmove(grid, direction);
-            return false;
-        }
-        
-        return true;
-    }
-    
-    /**
-     * This method un-does the move in the direction that is passed in. This is called in the move() method
-     * when a collision is detected after simulating a move.
-     * @param grid Grid obj containing info on the walls/pile of Squares
-     * @param direction the direction of the previous movement (which will now be reversed)
-     */
-    private void unmove(Grid grid, Direction direction) {
-        //Change the direction accordingly
+    public boolean move(ReadOnlyBoard grid, Direction direction) {
+        int old_x = x;
+        int old_y = y;
+
         switch (direction) {
         case DOWN:
-            direction = Direction.UP;
-            break;
-        case UP: //for testing purposes
-            direction = Direction.DOWN;
+            y++;
             break;
         case LEFT:
-            direction = Direction.RIGHT;
+            x--;
             break;
         case RIGHT:
-            direction = Direction.LEFT;
+            x++;
+            break;
+        case UP:   //This is for testing purposes
+            y--;
             break;
+        default:
+            System.out.println("Unknown direction: " + direction);
         }
-        
-        //Now move the rotations back
-        for (Square[] rotation : rotations) {
-            for (Square square : rotation) {
-                square.move(direction);
-            }
+
+        // Check the Grid for collisions and move back if true
+        if (grid.collides(this)) {
+            x = old_x;
+            y = old_y;
+            return false;
         }
-    } 
+
+        return true;
+    }
 
     /**
      * Find out what type of block this tetrimino is
@@ -322,21 +330,57 @@ public class Block implements DumbloxConstants {
     public BlockType getBlockType() {
         return block_type;
     }
-    
+
     /**
-     * Continuously call move on the block until it collides with the pile (returns false)
-     * @param grid - Grid obj containing info on the pile of Squares
+     * @return the index of the current rotation
      */
-    public void dropBlock(Grid grid) {
-        while (move(grid, Direction.DOWN)) {}
+    public int getRotation() {
+        return rotation_index;
     }
-    
+
     /**
-     * draw the Block by calling the drawBlock() method
-     * of the Grid (which draws all the Squares)
-     * @param grid - the Graphics object
+     * @return the number of rotations of this block's type
+     */
+    public int getRotationCount() {
+        return rotations.length;
+    }
+
+    /**
+     * Turn the block to one of its rotations without checking for collisions.
+     * @param rotation - the index of the rotation (between 0 and getRotationCount() - 1)
+     */
+    public void setRotation(int rotation) {
+        if (rotation < 0 || rotation >= rotations.length) {
+            throw new IllegalArgumentException("A " + block_type + " has no rotation " + rotation);
+        }
+        rotation_index = rotation;
+        updateShape();
+    }
+
+    /**
+     * Put the block somewhere else without checking for collisions.
+     * @param x - the new column of the "center" Square of the Block
+     * @param y - the new row of the "center" Square of the Block
+     */
+    public void setPosition(int x, int y) {
+        this.x = x;
+        this.y = y;
+    }
+
+    public int getX() {
+        return x;
+    }
+
+    public int getY() {
+        return y;
+    }
+
+    /**
+     * Move the block straight down until it lands on the pile. The grid works out the
+     * distance, so this doesn't have to move the block one row at a time.
+     * @param grid - Grid obj containing info on the pile of Squares
      */
-    public void draw(Grid grid) {
-        grid.drawBlock(this);
+    public void dropBlock(ReadOnlyBoard grid) {
+        y += grid.dropDistance(this);
     }
 }
\ No newline at end of file
@@ -0,0 +1,57 @@
+import java.util.ArrayList;
+
+/**
+ * The playing field that blocks fall into: the walls, the floor and the pile of squares at the bottom.
+ * Grid keeps every row of the field, and TowerGrid only keeps the rows that have something in them, for
+ * fields that are far too tall to store in full. Rows are numbered from 0 at the top to getRows() - 1
+ * at the bottom, and columns from 0 on the left. The questions that don't change the board are in
+ * ReadOnlyBoard, which is all that a BoardSnapshot, a copy of a board that never changes, implements.
+ */
+public interface Board extends ReadOnlyBoard {
+    /**
+     * Adds a block to the pile and finds any completed rows. This method assumes that the block has already
+     * collided with the pile.
+     * @param block the block that will be added to the pile
+     * @return a list of the completed rows, which may be reused by the next call to this method
+     */
+    public ArrayList<Integer> addBlockToPile(Block block);
+
+    /**
+     * Deletes all of the rows specified in row_list from the pile. Every row above a deleted row moves down.
+     * @param row_list the list of integers representing the rows that will be deleted from the pile.
+     */
+    public void deleteRows(ArrayList<Integer> row_list);
+
+    /**
+     * Pushes garbage rows into the bottom of the pile, moving the whole pile up. Each garbage row is
+     * filled except for one column. If the pile is pushed out of the top of the board, the game is over.
+     * @param count the number of garbage rows
+     * @param hole the column that is left empty in every garbage row
+     */
+    public void addGarbageRows(int count, int hole);
+
+    /**
+     * Cascade gravity: after rows have been deleted, every cluster of squares that touch each other
+     * falls on its own until it lands on the floor or on another cluster. Clusters fall from the lowest
+     * one up (the one with the lowest, then rightmost, square first), each as far as the smallest gap
+     * under its bottom squares, over and over until none of them can move. This can complete more rows,
+     * which are returned so that they can be cleared in turn.
+     * @return a list of the rows that are full after everything has landed, from the top down, which may
+     * be reused by the next call to this method or to addBlockToPile
+     */
+    public ArrayList<Integer> dropClusters();
+
+    /**
+     * Takes a snapshot of the pile that won't change when the board does, for undoing moves or for
+     * trying out moves without touching the board.
+     * @return the snapshot
+     */
+    public BoardSnapshot snapshot();
+
+    /**
+     * Puts the pile back the way it was when a snapshot was taken. The snapshot must be the same size as
+     * the board.
+     * @param snapshot the snapshot
+     */
+    public void restore(BoardSnapshot snapshot);
+}
\ No newline at end of file
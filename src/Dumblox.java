@@ -7,11 +7,12 @@ public class Dumblox extends JFrame implements WindowListener, DumbloxConstants
     
     /**
      * Setup the JFrame
-     * @param period
+     * @param period the time between frames in nanoseconds
+     * @param grid the empty board to play on
      */
-    public Dumblox(int period) {
+    public Dumblox(long period, Board grid) {
         super("Dumblox");
-        makeGUI(period);
+        makeGUI(period, grid);
         
         addWindowListener(this);
         pack();
@@ -22,11 +23,12 @@ public class Dumblox extends JFrame implements WindowListener, DumbloxConstants
     /**
      * Keep setting up the JFrame
      * @param loop_period
+     * @param grid
      */
-    private void makeGUI(int loop_period) {
+    private void makeGUI(long loop_period, Board grid) {
         Container c = getContentPane();
         
-        dumblox_panel = new DumbloxPanel(this, loop_period);
+        dumblox_panel = new DumbloxPanel(this, loop_period, grid);
         c.add(dumblox_panel, "Center");
     }
     
@@ -59,14 +61,32 @@ public class Dumblox extends JFrame implements WindowListener, DumbloxConstants
     
     // ----------------------------------------------------
     
+    /**
+     * Usage: java Dumblox [fps [rows columns [board]]]
+     * The fps is only how often the screen is drawn; the game itself always runs at TICKS_PER_SECOND.
+     * The board is one of the names known to BoardFactory, or two of them joined with a '+' to check
+     * the second board against the first one while playing.
+     */
     public static void main(String args[]) {
         int fps = DEFAULT_FPS;
         if (args.length != 0)
             fps = Integer.parseInt(args[0]);
+        if (fps <= 0)
+            throw new IllegalArgumentException("Invalid frame rate: " + fps);
+        
+        int rows = GRID_ROWS;
+        int columns = GRID_COLUMNS;
+        if (args.length >= 3) {
+            rows = Integer.parseInt(args[1]);
+            columns = Integer.parseInt(args[2]);
+        }
+        
+        String board = BoardFactory.DEFAULT_BOARD;
+        if (args.length >= 4)
+            board = args[3];
         
-        // TODO what's going on here?
-        int loop_period = (int) 1000.0/fps;
+        long loop_period = 1000000000L / fps;
         
-        new Dumblox(loop_period);
+        new Dumblox(loop_period, BoardFactory.createBoard(board, rows, columns));
     }
 }
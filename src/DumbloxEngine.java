@@ -0,0 +1,558 @@
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * The game rules of Dumblox, without any drawing. The engine is advanced one tick at a time with step(),
+ * which makes it usable both behind the DumbloxPanel and in a headless JVM for simulations.
+ */
+public class DumbloxEngine implements DumbloxConstants {
+    // BlockType.values() makes a new array every time, so keep one around for picking blocks
+    private static final BlockType[] BLOCK_TYPES = BlockType.values();
+
+    // The Zobrist keys of the active block's type and rotation and of the next block's type
+    private static final long[][] ACTIVE_BLOCK_KEYS = new long[BLOCK_TYPES.length][4];
+    private static final long[] NEXT_BLOCK_KEYS = new long[BLOCK_TYPES.length];
+
+    static {
+        // a different seed from the grid's, so that blocks and squares don't get the same keys
+        Random keys = new Random(~HASH_SEED);
+        for (int t = 0; t < BLOCK_TYPES.length; t++) {
+            for (int r = 0; r < ACTIVE_BLOCK_KEYS[t].length; r++) {
+                ACTIVE_BLOCK_KEYS[t][r] = keys.nextLong();
+            }
+            NEXT_BLOCK_KEYS[t] = keys.nextLong();
+        }
+    }
+
+    private boolean is_paused = false; //pauses the game
+    private boolean game_over = false; //for game termination
+    private boolean instant_gravity = false; //20G: the active block always sits on the pile
+    private boolean cascade = false; //after rows are cleared, clusters of squares fall on their own
+
+    private int game_level;  // used to determine scoring
+    private int game_speed;  // based on the lvl of the game; determines how fast blocks fall
+    private int total_rows_cleared;  // for record keeping purposes
+    private int total_score; // keep track of the player's score
+
+    //Number of cycles since the active block has been moved down by the game (not user)
+    private int periods_since_forced_move;
+
+    private Board grid;
+    private Timer timer;
+
+    // The current and next block. Both blocks are reset in place for every new block, so there is
+    // always an active block, even while cleared rows are still fading out.
+    private Block active_block;
+    private Block next_block;
+    private int block_count; // the number of blocks that have been put into play
+    private int active_block_x; // the column where new blocks appear
+    private int next_block_x;   // the column where the next block is shown
+
+    // Cleared rows that are still fading out on the screen
+    private ArrayList<RowFade> fades;
+
+    //A random number generator for selecting the blocks
+    private Random generator;
+
+    //The state of the game when each of the last few blocks appeared, oldest first, for undo()
+    private ArrayList<Turn> history;
+    private int undo_limit;
+
+    /**
+     * Everything that undo() needs to put the game back to when a block appeared. The pile is kept as a
+     * snapshot, which shares its rows with the board and with the other snapshots.
+     */
+    private static class Turn {
+        BoardSnapshot board;
+        BlockType active_type;
+        BlockType next_type;
+        int block_count;
+        int game_level;
+        int game_speed;
+        int total_rows_cleared;
+        int total_score;
+    }
+
+    /**
+     * Creates an engine that picks its blocks with an unseeded random number generator.
+     */
+    public DumbloxEngine() {
+        this(new Random());
+    }
+
+    /**
+     * Creates an engine with the default grid size.
+     * @param generator the random number generator for selecting the blocks
+     */
+    public DumbloxEngine(Random generator) {
+        this(generator, GRID_ROWS, GRID_COLUMNS);
+    }
+
+    /**
+     * Creates an engine that picks its blocks with the given random number generator. Passing in a seeded
+     * generator makes a game reproducible.
+     * @param generator the random number generator for selecting the blocks
+     * @param rows the number of rows of the grid
+     * @param columns the number of columns of the grid
+     */
+    public DumbloxEngine(Random generator, int rows, int columns) {
+        this(generator, new Grid(rows, columns));
+    }
+
+    /**
+     * Creates an engine that plays on the given board, for example a TowerGrid for a tower that is
+     * too tall to store in full, or one made by BoardFactory.
+     * @param generator the random number generator for selecting the blocks
+     * @param grid the empty board to play on
+     */
+    public DumbloxEngine(Random generator, Board grid) {
+        this.generator = generator;
+        this.grid = grid;
+
+        // Initialize some of the game variables
+        game_level = 0;
+        game_speed = START_SPEED;
+        total_rows_cleared = 0;
+        total_score = 0;
+        periods_since_forced_move = 0; //The number of loop periods since the block was forced downwards
+
+        timer = new Timer();
+        active_block_x = grid.getColumns() / 2;
+        next_block_x = grid.getColumns() + (NEXT_BLOCK_X - GRID_COLUMNS);
+
+        // Select new random blocks to start the game with
+        BlockType new_type = BLOCK_TYPES[generator.nextInt(BLOCK_TYPES.length)];
+        active_block = new Block(active_block_x, ACTIVE_BLOCK_Y, new_type);
+        block_count = 1;
+        fades = new ArrayList<RowFade>();
+
+        new_type = BLOCK_TYPES[generator.nextInt(BLOCK_TYPES.length)];
+        next_block = new Block(next_block_x, NEXT_BLOCK_Y, new_type);
+
+        //Undo is off until it's turned on with setUndoLimit(), so a game that never undoes doesn't pay for it
+        history = new ArrayList<Turn>();
+        undo_limit = 0;
+    }
+
+    /**
+     * Advances the game by one tick: applies the input, runs any scheduled tasks and moves the active
+     * block down when it is time to.
+     * @param input the input for this tick, or Input.NONE
+     */
+    public void step(Input input) {
+        step(input, 0);
+    }
+
+    /**
+     * Advances the game by one tick, like step(Input), for a tick that was meant to run at the given
+     * time, which the timer's profiling counts late ticks against.
+     * @param input the input for this tick, or Input.NONE
+     * @param tick_time the System.nanoTime() that the tick was scheduled for, or 0 if it has none
+     */
+    public void step(Input input, long tick_time) {
+        applyInput(input);
+
+        timer.tick(tick_time); //Timer tick (scheduled tasks are performed here)
+
+        if (!is_paused && !game_over) {
+            //Make the active block move down every TICKS_PER_SECOND-gameSpeed ticks
+            if (periods_since_forced_move >= TICKS_PER_SECOND - game_speed) {
+                moveBlockDown();
+            }
+            else {
+                periods_since_forced_move++;
+            }
+
+            checkForGameOver();
+        }
+    }
+
+    /**
+     * Applies an input to the active block without advancing the game. Inputs are ignored while the
+     * game is paused or over.
+     * @param input the input to apply
+     */
+    public void applyInput(Input input) {
+        if (is_paused || game_over) return;
+
+        switch (input) {
+        case LEFT:
+            active_block.move(grid, Direction.LEFT);
+            break;
+        case RIGHT:
+            active_block.move(grid, Direction.RIGHT);
+            break;
+        case UP: //This is for testing purposes
+            active_block.move(grid, Direction.UP);
+            break;
+        case NEXT_TYPE: //This is for testing purposes
+            active_block.reset(active_block_x, 0,
+                    (BLOCK_TYPES[(active_block.getBlockType().ordinal() + 1) % BLOCK_TYPES.length]));
+        case DOWN:
+            moveBlockDown();
+            break;
+        case DROP:
+            // drop the block and add it to the pile (which creates a new block)
+            active_block.dropBlock(grid);
+            addBlockToPile();
+            periods_since_forced_move = 0;
+            break;
+        case ROTATE_CLOCKWISE:
+            active_block.rotate(grid, RotateDirection.CLOCKWISE);
+            break;
+        case ROTATE_C_CLOCKWISE:
+            active_block.rotate(grid, RotateDirection.C_CLOCKWISE);
+            break;
+        }
+
+        applyInstantGravity();
+        checkForGameOver();
+    }
+
+    /**
+     * Adds the active block to the pile, clears any completed rows and brings in the next block. The
+     * rows are cleared and scored straight away, so play goes on without waiting for them to fade out;
+     * the fade is only drawn on top of the board (see getFades()). In cascade mode, the clusters of
+     * squares fall after each clear, and any rows that they complete are cleared in turn.
+     */
+    private void addBlockToPile() {
+        ArrayList<Integer> completed_rows = grid.addBlockToPile(active_block);
+
+        while (!completed_rows.isEmpty()) {
+            startFade(completed_rows);
+
+            /* Calculate the score for this clearing and update the total score.
+             * Also update the number of cleared rows and see if it's time to go
+             * to the next level.
+             */
+            updateScore(completed_rows.size());
+            checkForLevelChange(completed_rows.size());
+
+            grid.deleteRows(completed_rows);
+            if (!cascade) break;
+            completed_rows = grid.dropClusters();
+        }
+
+        updateBlock();
+    }
+
+    /**
+     * Copies the colors of completed rows before they are deleted and schedules the task that fades
+     * them out.
+     * @param completed_rows the completed rows
+     */
+    private void startFade(ArrayList<Integer> completed_rows) {
+        int[] rows = new int[completed_rows.size()];
+        byte[][] colors = new byte[rows.length][grid.getColumns()];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = completed_rows.get(i).intValue();
+            for (int j = 0; j < colors[i].length; j++) {
+                colors[i][j] = grid.getColor(rows[i], j);
+            }
+        }
+        RowFade fade = new RowFade(rows, colors);
+        fades.add(fade);
+
+        timer.schedule(new Task<RowFade>(1, NUM_FADE_CYCLES, fade, true) {
+            public RowFade run(int counter, RowFade fade) {
+                //Row fading logic here
+                fade.setAlpha(1.0f - ((1.0f / NUM_FADE_CYCLES) * (counter + 1)));
+                if (counter + 1 == NUM_FADE_CYCLES) fades.remove(fade);
+
+                return fade;
+            }
+        });
+    }
+
+    /**
+     * Pushes garbage rows into the bottom of the grid, for example from an opponent in versus play. The
+     * falling block is pushed up along with the pile if the garbage would run into it.
+     * @param count the number of garbage rows
+     * @param hole the column that is left empty in every garbage row
+     */
+    public void addGarbage(int count, int hole) {
+        grid.addGarbageRows(count, hole);
+
+        for (int i = 0; i < count && grid.collides(active_block); i++) {
+            active_block.setPosition(active_block.getX(), active_block.getY() - 1);
+        }
+
+        checkForGameOver();
+    }
+
+    /**
+     * Selects new random blocks to be the active and next blocks.
+     */
+    public void updateBlock() {
+        // reuse the block objects so that new blocks don't create any garbage
+        active_block.reset(active_block_x, ACTIVE_BLOCK_Y, next_block.getBlockType());
+        block_count++;
+
+        BlockType new_type = BLOCK_TYPES[generator.nextInt(BLOCK_TYPES.length)];
+        next_block.reset(next_block_x, NEXT_BLOCK_Y, new_type);
+
+        saveTurn();
+        applyInstantGravity();
+    }
+
+    /**
+     * Remembers the state of the game as a new block appears, so that the block before it can be taken
+     * back. Only the last undo_limit blocks are remembered.
+     */
+    private void saveTurn() {
+        if (undo_limit == 0) return;
+
+        Turn turn = new Turn();
+        turn.board = grid.snapshot();
+        turn.active_type = active_block.getBlockType();
+        turn.next_type = next_block.getBlockType();
+        turn.block_count = block_count;
+        turn.game_level = game_level;
+        turn.game_speed = game_speed;
+        turn.total_rows_cleared = total_rows_cleared;
+        turn.total_score = total_score;
+
+        history.add(turn);
+        if (history.size() > undo_limit + 1) history.remove(0);
+    }
+
+    /**
+     * Takes back the last block that was put on the pile: the pile, the score and the blocks go back to
+     * how they were when that block appeared, and it starts falling again from the top. Garbage that was
+     * pushed in since then is taken back too. The blocks after it are picked again, so they may be
+     * different.
+     * @return true if a block was taken back
+     */
+    public boolean undo() {
+        if (history.size() < 2) return false;
+
+        history.remove(history.size() - 1);
+        Turn turn = history.get(history.size() - 1);
+        grid.restore(turn.board);
+        active_block.reset(active_block_x, ACTIVE_BLOCK_Y, turn.active_type);
+        next_block.reset(next_block_x, NEXT_BLOCK_Y, turn.next_type);
+        block_count = turn.block_count;
+        game_level = turn.game_level;
+        game_speed = turn.game_speed;
+        total_rows_cleared = turn.total_rows_cleared;
+        total_score = turn.total_score;
+        game_over = grid.isGameOver();
+        periods_since_forced_move = 0;
+
+        applyInstantGravity();
+        return true;
+    }
+
+    /**
+     * Sets how many blocks can be taken back with undo(). Undo is off to begin with. While it is on, every
+     * block that appears takes a snapshot of the board, which shares its rows with a Grid or a TowerGrid
+     * but copies the pile of the other boards. Turning undo on remembers the block that is falling now,
+     * so it can be taken back once the next one has appeared.
+     * @param undo_limit the number of blocks, or 0 to turn undo off
+     */
+    public void setUndoLimit(int undo_limit) {
+        if (undo_limit < 0) {
+            throw new IllegalArgumentException("The undo limit can't be negative: " + undo_limit);
+        }
+
+        this.undo_limit = undo_limit;
+        while (history.size() > undo_limit + 1 || (undo_limit == 0 && !history.isEmpty())) {
+            history.remove(0);
+        }
+        if (undo_limit > 0 && history.isEmpty()) saveTurn();
+    }
+
+    /**
+     * In instant gravity (20G) mode the active block falls all the way down as soon as it appears and
+     * after every move, and then locks on the next gravity tick.
+     */
+    private void applyInstantGravity() {
+        if (instant_gravity) {
+            active_block.dropBlock(grid);
+        }
+    }
+
+    /**
+     * Placed in a method because the same code was getting called at least twice
+     */
+    private void moveBlockDown() {
+        if (!active_block.move(grid, Direction.DOWN)) {
+            //Collision has occurred. Add active_block to pile and make a new block
+            addBlockToPile();
+        }
+
+        periods_since_forced_move = 0;
+    }
+
+    /**
+     * The grid is keeping track of whether or not a block colliding with the
+     * pile should cause the game to end, so we just ask Grid if the game is over.
+     * If the game is over, then set the game_over variable accordingly.
+     */
+    public void checkForGameOver() {
+        if (grid.isGameOver()) game_over = true;
+    }
+
+    /**
+     * Calculate the score for the latest line(s) clearing and
+     * update the total score
+     * @param num_rows - the number of lines that were just cleared
+     */
+    public void updateScore(int num_rows) {
+        //A cascade can complete more rows at once than a block can, which score like four rows
+        total_score += (game_level + 1) * SCORING_ARRAY[Math.min(num_rows, SCORING_ARRAY.length) - 1];
+    }
+
+    /**
+     * Determine if enough rows have been cleared for the player
+     * to advance to the next level.
+     * @param num_rows - the number of rows that the player just cleared
+     */
+    public void checkForLevelChange(int num_rows) {
+        // add num_rows to the total number of rows cleared
+        total_rows_cleared += num_rows;
+
+        if (total_rows_cleared >= (game_level + 1) * ROWS_PER_LEVEL) {
+            game_level++;
+            if (game_speed + SPEED_INC <= END_SPEED) {
+                game_speed += SPEED_INC;
+            }
+        }
+    }
+
+    /**
+     * is_paused ? false : true
+     * reverse the polarity of the is_paused variable
+     */
+    public void togglePause() {
+        is_paused = !is_paused;
+    }
+
+    public void setPaused(boolean is_paused) {
+        this.is_paused = is_paused;
+    }
+
+    /**
+     * Gets the state of the game: running, paused or over.
+     * @return the current game state
+     */
+    public GameState getGameState() {
+        if (game_over) return GameState.GAME_OVER;
+        if (is_paused) return GameState.PAUSED;
+        return GameState.RUNNING;
+    }
+
+    /**
+     * Turns instant gravity (20G) mode on or off.
+     * @param instant_gravity true to make blocks fall all the way down immediately
+     */
+    public void setInstantGravity(boolean instant_gravity) {
+        this.instant_gravity = instant_gravity;
+        applyInstantGravity();
+    }
+
+    public boolean isInstantGravity() {
+        return instant_gravity;
+    }
+
+    /**
+     * Turns cascade gravity on or off. With cascade gravity, every cluster of squares that touch each
+     * other falls on its own after rows are cleared, which can set off more clears.
+     * @param cascade true to turn cascade gravity on
+     */
+    public void setCascade(boolean cascade) {
+        this.cascade = cascade;
+    }
+
+    public boolean isCascade() {
+        return cascade;
+    }
+
+    public boolean isPaused() {
+        return is_paused;
+    }
+
+    public boolean isGameOver() {
+        return game_over;
+    }
+
+    /**
+     * Finds every place where the active block can come to rest from where it is now, for bots and
+     * analysis tools. The placements are read from the finder.
+     * @param finder a finder made for the size of this engine's grid
+     * @return the number of placements
+     */
+    public int findPlacements(PlacementFinder finder) {
+        return finder.find(grid, active_block.getBlockType(), active_block.getX(), active_block.getY(),
+                active_block.getRotation());
+    }
+
+    /**
+     * Gets a 64-bit hash of the pile, the active block's type and rotation and the next block's type,
+     * for transposition tables, finding repeated positions and checking that two copies of a game
+     * haven't drifted apart. Where the active block is doesn't change the hash. A Grid keeps the pile's
+     * hash up to date, so this is cheap enough to call on every tick; the other boards hash their pile
+     * from scratch each time.
+     * @return the hash of the game state
+     */
+    public long getStateHash() {
+        return grid.getHash() ^ NEXT_BLOCK_KEYS[next_block.getBlockType().ordinal()]
+                ^ ACTIVE_BLOCK_KEYS[active_block.getBlockType().ordinal()][active_block.getRotation()];
+    }
+
+    public Board getGrid() {
+        return grid;
+    }
+
+    /**
+     * Gets the timer that runs the game's scheduled tasks, for example to profile them.
+     * @return the timer
+     */
+    public Timer getTimer() {
+        return timer;
+    }
+
+    /**
+     * Gets the block that is currently falling.
+     * @return the active block
+     */
+    public Block getActiveBlock() {
+        return active_block;
+    }
+
+    /**
+     * Gets the cleared rows that are still fading out, which are drawn on top of the board.
+     * @return the fades, oldest first
+     */
+    public ArrayList<RowFade> getFades() {
+        return fades;
+    }
+
+    public Block getNextBlock() {
+        return next_block;
+    }
+
+    /**
+     * Gets the number of blocks that have been put into play, including the active block.
+     * @return the number of blocks
+     */
+    public int getBlockCount() {
+        return block_count;
+    }
+
+    public int getGameLevel() {
+        return game_level;
+    }
+
+    public int getGameSpeed() {
+        return game_speed;
+    }
+
+    public int getTotalScore() {
+        return total_score;
+    }
+
+    public int getTotalRowsCleared() {
+        return total_rows_cleared;
+    }
+}
\ No newline at end of file
@@ -24,28 +24,46 @@ public class DumbloxPanel extends JPanel implements Runnable, DumbloxConstants {
     to other running threads. */
     private static final int NUM_DELAYS_PER_YIELD = 16;
 
-    /* number of frames that can be skipped in any one animation loop
-    i.e the games state is updated but not rendered */
-    private static int MAX_FRAME_SKIPS = 5;
+    /* number of ticks that a stall can hold up on top of a frame's own ticks before
+    the game slows down instead of catching up (see max_ticks_per_frame) */
+    private static final int STALL_TICKS = TICKS_PER_SECOND / 4;
+    
+    private static final Color BACKGROUND_COLOR = Color.black;
+    private static final String PROFILE_REPORT = "profile report"; // the name of the task that prints profiles
+    private static final int COMMAND_QUEUE_SIZE = 64; // far more key presses than can come in one frame
+    
+    // the things that the player can ask for, which are queued up for the game loop
+    private enum Command {
+        LEFT(Input.LEFT), RIGHT(Input.RIGHT), UP(Input.UP), NEXT_TYPE(Input.NEXT_TYPE), DOWN(Input.DOWN),
+        DROP(Input.DROP), ROTATE_CLOCKWISE(Input.ROTATE_CLOCKWISE), ROTATE_C_CLOCKWISE(Input.ROTATE_C_CLOCKWISE),
+        UNDO(null), TOGGLE_PAUSE(null, true), PAUSE(null, true), RESUME(null, true), TOGGLE_PROFILING(null);
+        
+        private Input input; // the engine input that the command is, or null if it's something else
+        private boolean retried; // true if a full queue is waited on instead of dropping it
+        
+        private Command(Input input) {
+            this(input, false);
+        }
+        
+        private Command(Input input, boolean retried) {
+            this.input = input;
+            this.retried = retried;
+        }
+    }
     
     private Thread animator_thread;  //animation thread
     
-    private boolean running = false;   //stops the animation
-    private boolean is_paused = false; //pauses the game
-    private boolean game_over = false; //for game termination
+    private volatile boolean running = false;   //stops the animation, from any thread
     
     private long game_start_time;
-    private long frames_skipped = 0;
+    private long ticks_dropped = 0; // ticks that were never run because a stall held them up too long
+    private volatile long commands_dropped = 0; // commands lost to a full queue (see queueCommand())
     private long prev_stats_time; // TODO also not being used anywhere...
     
-    private int loop_period; // period between screen drawing
-    private int game_level;  // used to determine scoring
-    private int game_speed;  // based on the lvl of the game; determines how fast blocks fall
-    private int total_rows_cleared;  // for record keeping purposes
-    private int total_score; // keep track of the player's score
-    
-    //Number of cycles since the active block has been moved down by the game (not user)
-    private int periods_since_forced_move; 
+    private long loop_period; // period between screen drawing, in nanoseconds
+    private int max_ticks_per_frame; // the most ticks that one frame can run (see the constructor)
+    private int panel_width;  // the size of the panel, which grows to fit big grids
+    private int panel_height;
  
     // TODO dx_top really doesn't seem to be of any use...
 	private Dumblox dx_top;
@@ -53,99 +71,99 @@ public class DumbloxPanel extends JPanel implements Runnable, DumbloxConstants {
     private Graphics2D db_graphics;
     private Image db_image = null;
     
-    private Grid grid;
-    private Timer timer;
-    
-    // The current and nextblock
-    private Block active_block;
-    private Block next_block;
-    
-    //A random number generator for selecting the blocks
-    Random generator;
+    private DumbloxEngine engine; // the game rules and state
+    private GridView grid_view;   // draws the engine's grid
+    private CommandQueue<Command> commands; // from the event thread to the game loop
     
     HashMap<Integer, Image> backgrounds;
     
-    //The pre-loaded images for squares
-    public static Image RED_IMAGE;
-    public static Image BLUE_IMAGE;
-    public static Image GREEN_IMAGE;
-    public static Image YELLOW_IMAGE;
-    public static Image PURPLE_IMAGE;
-    public static Image CYAN_IMAGE;
-    public static Image GREY_IMAGE;
+    //The pre-loaded images for squares, keyed by their image file
+    HashMap<String, Image> square_images;
     
     public static Image BACKGROUND;
+    private int background_level; // the game level that BACKGROUND was picked for
     
     /**
      * DumbloxPanel constructor that sets up some variables and configures
      * the JPanel.
      * @param dx - the Dumblox game obj
-     * @param loop_period - desired time for the animation/game loops
+     * @param loop_period - desired time between frames in nanoseconds, which doesn't change the
+     * speed of the game
+     * @param grid - the empty board to play on
      */
-    public DumbloxPanel(Dumblox dx, int loop_period) {
+    public DumbloxPanel(Dumblox dx, long loop_period, Board grid) {
         dx_top = dx;
         this.loop_period = loop_period;
         
-        // Initialize some of the game variables
-        game_level = 0;
-        game_speed = START_SPEED;
-        total_rows_cleared = 0;
-        total_score = 0;
-        periods_since_forced_move = 0; //The number of loop periods since the block was forced downwards
+        // a slow frame rate has to run every tick of its frames to keep the game at full speed, so only
+        // ticks held up by a stall past that are dropped
+        max_ticks_per_frame = (int) Math.max(STALL_TICKS, (loop_period + TICK_NANOS - 1) / TICK_NANOS + 1);
+        
         backgrounds = new HashMap<Integer, Image>();
+        square_images = new HashMap<String, Image>();
+        
+        // make room for the grid and the next block when the grid is bigger than usual
+        panel_width = Math.max(PANEL_WIDTH, PANEL_WIDTH + (grid.getColumns() - GRID_COLUMNS) * SQUARE_SIZE);
+        panel_height = Math.max(PANEL_HEIGHT, PANEL_HEIGHT + (grid.getRows() - GRID_ROWS) * SQUARE_SIZE);
         
         // setup the JPanel
-        setBackground(Color.black);
-        setPreferredSize(new Dimension(PANEL_WIDTH, PANEL_HEIGHT));
+        setBackground(BACKGROUND_COLOR);
+        setPreferredSize(new Dimension(panel_width, panel_height));
         
         setFocusable(true);
         requestFocus(); // JPanel now receives key events
         readyForTermination();
 
-        // instantiate the random number generator
-        generator = new Random();
+        // the engine creates the grid and picks the first blocks
+        engine = new DumbloxEngine(new Random(), grid);
+        engine.setUndoLimit(MAX_UNDO); // the undo key takes back blocks
+        
+        // key presses are turned into commands for the game loop, which is the only thread that changes
+        // the game (see updateGame())
+        commands = new CommandQueue<Command>(COMMAND_QUEUE_SIZE);
         
         // add key listeners so the game knows what to do when certain keys are pressed
         addKeyListener(new KeyAdapter() {
             public void keyPressed(KeyEvent e) {
-                if (!is_paused && active_block != null) {
-                    switch (e.getKeyCode()) {
-                    case KeyEvent.VK_LEFT:
-                        active_block.move(grid, Direction.LEFT);
-                        break;
-                    case KeyEvent.VK_RIGHT:
-                        active_block.move(grid, Direction.RIGHT);
-                        break;
-                    case KeyEvent.VK_UP: //This is for testing purposes
-                        active_block.move(grid, Direction.UP);
-                        break;
-                    case KeyEvent.VK_ENTER: //This is for testing purposes
-                        active_block = new Block(new Point(GRID_COLUMNS / 2, 0), 
-                                (BlockType.values()[(active_block.getBlockType().ordinal() + 1) % BlockType.values().length]));
-                    case KeyEvent.VK_DOWN:
-                        moveBlockDown();
-                        break;
-                    case KeyEvent.VK_SPACE:
-                        // drop the block and add it to the pile (which creates a new block)
-                        active_block.dropBlock(grid);
-                        addBlockToPile();                        
-                        periods_since_forced_move = 0;
-                        break;
-                    case KeyEvent.VK_X:
-                        // rotate the block clockwise
-                        active_block.rotate(grid, RotateDirection.CLOCKWISE);
-                        break;
-                    case KeyEvent.VK_Z:
-                        // rotate the block counter-clockwise
-                        active_block.rotate(grid, RotateDirection.C_CLOCKWISE);
-                        break;
-                    }
-                }
-                
-                switch(e.getKeyCode()) {
+                switch (e.getKeyCode()) {
+                case KeyEvent.VK_LEFT:
+                    queueCommand(Command.LEFT);
+                    break;
+                case KeyEvent.VK_RIGHT:
+                    queueCommand(Command.RIGHT);
+                    break;
+                case KeyEvent.VK_UP: //This is for testing purposes
+                    queueCommand(Command.UP);
+                    break;
+                case KeyEvent.VK_ENTER: //This is for testing purposes
+                    queueCommand(Command.NEXT_TYPE);
+                    break;
+                case KeyEvent.VK_DOWN:
+                    queueCommand(Command.DOWN);
+                    break;
+                case KeyEvent.VK_SPACE:
+                    // drop the block and add it to the pile (which creates a new block)
+                    queueCommand(Command.DROP);
+                    break;
+                case KeyEvent.VK_X:
+                    // rotate the block clockwise
+                    queueCommand(Command.ROTATE_CLOCKWISE);
+                    break;
+                case KeyEvent.VK_Z:
+                    // rotate the block counter-clockwise
+                    queueCommand(Command.ROTATE_C_CLOCKWISE);
+                    break;
+                case KeyEvent.VK_BACK_SPACE:
+                    // take back the last block
+                    queueCommand(Command.UNDO);
+                    break;
                 case KeyEvent.VK_P:
                 case KeyEvent.VK_PAUSE:
                     togglePause();
+                    break;
+                case KeyEvent.VK_F3:
+                    queueCommand(Command.TOGGLE_PROFILING);
+                    break;
                 }
             }
         });
@@ -155,13 +173,13 @@ public class DumbloxPanel extends JPanel implements Runnable, DumbloxConstants {
          */
         //Create the square images so that they will already be in memory
         try {
-            RED_IMAGE    = ImageIO.read(getClass().getResource(RED_SQUARE));
-            BLUE_IMAGE   = ImageIO.read(getClass().getResource(BLUE_SQUARE));
-            GREEN_IMAGE  = ImageIO.read(getClass().getResource(GREEN_SQUARE));
-            YELLOW_IMAGE = ImageIO.read(getClass().getResource(YELLOW_SQUARE));
-            PURPLE_IMAGE = ImageIO.read(getClass().getResource(PURPLE_SQUARE));
-            CYAN_IMAGE   = ImageIO.read(getClass().getResource(CYAN_SQUARE));
-            GREY_IMAGE   = ImageIO.read(getClass().getResource(GREY_SQUARE));
+            square_images.put(RED_SQUARE, ImageIO.read(getClass().getResource(RED_SQUARE)));
+            square_images.put(BLUE_SQUARE, ImageIO.read(getClass().getResource(BLUE_SQUARE)));
+            square_images.put(GREEN_SQUARE, ImageIO.read(getClass().getResource(GREEN_SQUARE)));
+            square_images.put(YELLOW_SQUARE, ImageIO.read(getClass().getResource(YELLOW_SQUARE)));
+            square_images.put(PURPLE_SQUARE, ImageIO.read(getClass().getResource(PURPLE_SQUARE)));
+            square_images.put(CYAN_SQUARE, ImageIO.read(getClass().getResource(CYAN_SQUARE)));
+            square_images.put(GREY_SQUARE, ImageIO.read(getClass().getResource(GREY_SQUARE)));
             
             backgrounds.put(0, ImageIO.read(getClass().getResource(BACKGROUND0)));
             backgrounds.put(1, ImageIO.read(getClass().getResource(BACKGROUND1)));
@@ -181,15 +199,8 @@ public class DumbloxPanel extends JPanel implements Runnable, DumbloxConstants {
         }
         
         BACKGROUND = backgrounds.get(0);
-        grid = new Grid(new Point(GRID_POSITION_X, GRID_POSITION_Y), GRID_ROWS, GRID_COLUMNS, db_graphics);
-        timer = new Timer();
-        
-        // Select new random blocks to start the game with
-        BlockType new_type = BlockType.values()[generator.nextInt(BlockType.values().length)];
-        active_block = new Block(new Point(ACTIVE_BLOCK_X, ACTIVE_BLOCK_Y), new_type);
-        
-        new_type = BlockType.values()[generator.nextInt(BlockType.values().length)];
-        next_block = new Block(new Point(NEXT_BLOCK_X, NEXT_BLOCK_Y), new_type);
+        background_level = 0;
+        grid_view = new GridView(new Point(GRID_POSITION_X, GRID_POSITION_Y), engine.getGrid(), square_images, db_graphics);
         
         // listen for mouse presses
         addMouseListener( new MouseAdapter () { // TODO Do we need the mouse at all?
@@ -204,59 +215,50 @@ public class DumbloxPanel extends JPanel implements Runnable, DumbloxConstants {
      * @see java.lang.Runnable#run()
      */
     public void run() {
-        long before_time, after_time, time_diff, sleep_time;
-        int over_sleep_time = 0;
+        long frame_start, previous_time, sleep_time;
+        long accumulator = 0; // time that has passed but hasn't been run as ticks yet
         int num_delays = 0;
-        int excess_time = 0;
-        //Graphics g;
         
-        game_start_time = System.currentTimeMillis();
+        game_start_time = System.nanoTime();
         prev_stats_time = game_start_time;
-        before_time = game_start_time;
+        previous_time = game_start_time;
         
         running = true;
         
         while (running) {
-            updateGame();  // game state is updated
+            frame_start = System.nanoTime();
+            accumulator += frame_start - previous_time;
+            previous_time = frame_start;
+            
+            /* The game runs in ticks of TICK_NANOS whatever the frame rate is: each frame runs
+             as many ticks as fit into the time that has passed, and the rest carries over to the
+             next frame. A frame that has fallen too far behind drops the ticks it can't run, so
+             a stall slows the game down instead of making it race to catch up. */
+            int ticks = 0;
+            while (accumulator >= TICK_NANOS && ticks < max_ticks_per_frame) {
+                accumulator -= TICK_NANOS;
+                updateGame(frame_start - accumulator);
+                ticks++;
+            }
+            if (accumulator >= TICK_NANOS) {
+                ticks_dropped += accumulator / TICK_NANOS;
+                accumulator %= TICK_NANOS;
+            }
+            
             renderGame();  // draw to an off-screen buffer
             paintScreen(); // draw buffer to screen
             
-            after_time = System.currentTimeMillis();
-            time_diff = after_time - before_time;
-            sleep_time = (loop_period - time_diff) - over_sleep_time; // time left in this loop
-            
+            sleep_time = loop_period - (System.nanoTime() - frame_start); // time left in this frame
             if (sleep_time > 0) { // some time left in this cycle
                 try {
-                    Thread.sleep(sleep_time);
+                    Thread.sleep(sleep_time / 1000000L, (int) (sleep_time % 1000000L));
                 }
                 catch (InterruptedException ex) {}
-                over_sleep_time = (int)((System.currentTimeMillis() - after_time) - sleep_time);
-            }
-            else { // the frame took longer than the period
-            	// add the extra time that the update/render/paint cycle took (over the desired period)
-            	excess_time -= sleep_time;
-                over_sleep_time = 0;
-                
-                if (++num_delays >= NUM_DELAYS_PER_YIELD) {
-                    Thread.yield(); // give another thread a chance to run
-                    num_delays = 0;
-                }
             }
-            
-            before_time = System.currentTimeMillis();
-            
-            /* If frame animation is taking too long, update the game state
-             without rendering it, to get the updates/sec nearer to
-             the required FPS. */
-            int skips = 0;
-            
-            while ((excess_time > loop_period) && (skips < MAX_FRAME_SKIPS)) {
-                excess_time -= loop_period;
-                updateGame();    // update state but don't render
-                skips++;
+            else if (++num_delays >= NUM_DELAYS_PER_YIELD) { // the frame took longer than the period
+                Thread.yield(); // give another thread a chance to run
+                num_delays = 0;
             }
-            
-            frames_skipped += skips;
         }
         
         // once it kicks out of the while loop (i.e. !running), we want to exit
@@ -264,22 +266,43 @@ public class DumbloxPanel extends JPanel implements Runnable, DumbloxConstants {
     }
 
     /**
-     * Updates the game state. This method will be run every
-     * period (iteration of the run() loop).
+     * Runs one tick of the game. The commands that came in before the time of the tick are applied
+     * first, so the game is only ever changed from the game loop's thread, and a key press lands in the
+     * tick that it was made in even when a frame runs several ticks.
+     * @param tick_time the System.nanoTime() that the tick runs the game up to
      */
-    private void updateGame() {
-        timer.tick(); //Timer tick (scheduled tasks are performed here)
-        
-        if (!is_paused && !game_over && active_block != null) {
-            //Make the active block move down every FPS-gameSpeed cycles
-            if (periods_since_forced_move >= Dumblox.DEFAULT_FPS - game_speed) {
-                moveBlockDown();
-            }
-            else {
-                periods_since_forced_move++;
-            }
-            
-            checkForGameOver();
+    private void updateGame(long tick_time) {
+        Command command;
+        while ((command = commands.poll(tick_time)) != null) {
+            applyCommand(command);
+        }
+        engine.step(Input.NONE, tick_time);
+    }
+    
+    /**
+     * Carries out a command from the player. This runs on the game loop's thread.
+     * @param command the command
+     */
+    private void applyCommand(Command command) {
+        switch (command) {
+        case UNDO:
+            engine.undo();
+            break;
+        case TOGGLE_PAUSE:
+            engine.togglePause();
+            break;
+        case PAUSE:
+            engine.setPaused(true);
+            break;
+        case RESUME:
+            engine.setPaused(false);
+            break;
+        case TOGGLE_PROFILING:
+            switchProfiling();
+            break;
+        default:
+            engine.applyInput(command.input);
+            break;
         }
     }
     
@@ -292,7 +315,7 @@ public class DumbloxPanel extends JPanel implements Runnable, DumbloxConstants {
              * NOTE: createImage is a method from Component,
              * inherited by JPanel.
              */
-            db_image = createImage(PANEL_WIDTH, PANEL_HEIGHT);
+            db_image = createImage(panel_width, panel_height);
             
             if (db_image == null) {
                 System.out.println("dbImage is null");
@@ -301,7 +324,7 @@ public class DumbloxPanel extends JPanel implements Runnable, DumbloxConstants {
             else {
                 // getGraphics() creates a drawing context
                 db_graphics = (Graphics2D)db_image.getGraphics();
-                grid.setGraphics(db_graphics);
+                grid_view.setGraphics(db_graphics);
             }
         }
         
@@ -309,19 +332,29 @@ public class DumbloxPanel extends JPanel implements Runnable, DumbloxConstants {
         drawBackground();
         
         // draw game elements here
+        boolean is_paused = engine.isPaused();
+        Block active_block = engine.getActiveBlock();
+        Block next_block = engine.getNextBlock();
         if (active_block != null && next_block != null && !is_paused) {
-            active_block.draw(grid);
-            next_block.draw(grid);
+            grid_view.drawGhost(active_block);
+            grid_view.drawBlock(active_block);
+            grid_view.drawBlock(next_block);
         }
         
-        // draw the grid and score
-        if (!is_paused) grid.draw();
+        // draw the grid, the rows that are still fading out and the score
+        if (!is_paused) {
+            grid_view.draw();
+            ArrayList<RowFade> fades = engine.getFades();
+            for (int i = 0; i < fades.size(); i++) {
+                grid_view.drawFade(fades.get(i));
+            }
+        }
         drawGameLevel();
         drawGameScore();
         drawRowsCleared();
         
         if (is_paused) printPauseMessage();
-        if (game_over) printGameOverMessage();
+        if (engine.isGameOver()) printGameOverMessage();
     }
     
 	/**
@@ -371,7 +404,7 @@ public class DumbloxPanel extends JPanel implements Runnable, DumbloxConstants {
      * @param y the y-coordinate position of the mouse pointer
      */
     private void testPress(int x, int y) {
-        if (!is_paused && !game_over) {
+        if (engine.getGameState() == GameState.RUNNING) {
             //do stuff
         }
     }
@@ -408,6 +441,12 @@ public class DumbloxPanel extends JPanel implements Runnable, DumbloxConstants {
      * Draw the background
      */
     public void drawBackground() {
+        // change the background once the game speeds up to a new level
+        int game_level = engine.getGameLevel();
+        if (game_level != background_level && backgrounds.containsKey(game_level)) {
+            BACKGROUND = backgrounds.get(game_level);
+            background_level = game_level;
+        }
     	db_graphics.drawImage(BACKGROUND, 0, 0, null);
     }
     
@@ -415,112 +454,21 @@ public class DumbloxPanel extends JPanel implements Runnable, DumbloxConstants {
      * Draw the current game level on the panel
      */
     public void drawGameLevel() {
-    	db_graphics.drawString("Level: " + game_level, GAME_LEVEL_X, GAME_LEVEL_Y);
+    	db_graphics.drawString("Level: " + engine.getGameLevel(), GAME_LEVEL_X, GAME_LEVEL_Y);
     }
     
     /**
      * Draw the current game score on the panel
      */
     public void drawGameScore() {        
-    	db_graphics.drawString("Score: " + total_score, GAME_SCORE_X, GAME_SCORE_Y);
+    	db_graphics.drawString("Score: " + engine.getTotalScore(), GAME_SCORE_X, GAME_SCORE_Y);
     }
     
     /**
      * Draw the total rows cleared on the panel
      */
     public void drawRowsCleared() {        
-    	db_graphics.drawString("Rows: " + total_rows_cleared, ROWS_CLEARED_X, ROWS_CLEARED_Y);
-    }
-    
-    /**
-     * Adds the active block to the pile and in case of row completion schedules fading tasks and does
-     * score calculation.
-     */
-    private void addBlockToPile() {
-        ArrayList<Integer> completed_rows = grid.addBlockToPile(active_block);
-        
-        //If there are completed rows, then schedule fading tasks
-        if (!completed_rows.isEmpty()) {
-            //Stop drawing the active block
-            active_block = null;
-            
-            ArrayList<Object> obj_list = new ArrayList<Object>();
-            obj_list.add(this);
-            obj_list.add(completed_rows);
-            
-            Task fade_task = new Task(1, NUM_FADE_CYCLES, obj_list, true) {
-                public Object run(int counter, Object result) {
-                    ArrayList<Object> obj_list = (ArrayList<Object>) result;
-                    DumbloxPanel tp = (DumbloxPanel) obj_list.get(0);
-                    ArrayList<Integer> completed_rows = (ArrayList<Integer>) obj_list.get(1);
-                    
-                    //Row fading logic here
-                    tp.grid.fadeRows(completed_rows, 1.0f - ((1.0f / NUM_FADE_CYCLES) * (counter + 1)));
-                    
-                    return result;
-                }
-            };
-            
-            Task end_task = new Task(NUM_FADE_CYCLES, 1, obj_list, true) {
-                public Object run(int counter, Object result) {
-                    ArrayList<Object> obj_list = (ArrayList<Object>) result;
-                    DumbloxPanel tp = (DumbloxPanel) obj_list.get(0);
-                    ArrayList<Integer> completed_rows = (ArrayList<Integer>) obj_list.get(1);
-                    
-                    /* Calculate the score for this clearing and update the total score.
-                     * Also update the number of cleared rows and see if it's time to go
-                     * to the next level. 
-                     */
-                    tp.updateScore(completed_rows.size());
-                    tp.checkForLevelChange(completed_rows.size());
-                    
-                    tp.grid.deleteRows(completed_rows);
-                    tp.updateBlock();
-                    return result;
-                }
-                
-            };
-            
-            timer.schedule("fade", fade_task);
-            timer.schedule("end_fade", end_task);
-        }
-        else {
-            updateBlock();
-        }
-    }
-    
-    /**
-     * Selects new random blocks to be the active and next blocks.
-     */
-    public void updateBlock() {
-    	/* although we've already created the next_block, it's easier to just recreate and let the
-    	 * old next_block obj get garbage collected
-    	 */
-        active_block = new Block(new Point(ACTIVE_BLOCK_X, ACTIVE_BLOCK_Y), next_block.getBlockType());
-        
-        BlockType new_type = BlockType.values()[generator.nextInt(BlockType.values().length)];
-        next_block = new Block(new Point(NEXT_BLOCK_X, NEXT_BLOCK_Y), new_type);
-    }
-    
-    /**
-     * Placed in a method because the same code was getting called at least twice
-     */
-    private void moveBlockDown() {
-    	if (!active_block.move(grid, Dumblox.Direction.DOWN)) {
-            //Collision has occurred. Add active_block to pile and make a new block
-            addBlockToPile();
-        }
-    	
-        periods_since_forced_move = 0;
-    }
-
-    /**
-     * The grid is keeping track of whether or not a block colliding with the
-     * pile should cause the game to end, so we just ask Grid if the game is over.
-     * If the game is over, then set the game_over variable accordingly.
-     */
-    public void checkForGameOver() {
-    	if (grid.isGameOver()) game_over = true;
+    	db_graphics.drawString("Rows: " + engine.getTotalRowsCleared(), ROWS_CLEARED_X, ROWS_CLEARED_Y);
     }
     
     /**
@@ -529,8 +477,8 @@ public class DumbloxPanel extends JPanel implements Runnable, DumbloxConstants {
     private void printGameOverMessage() {
     	// TODO make this msg into a graphic instead of text
         String msg = "You're an incompetent fool";
-        int x = PANEL_WIDTH / 3;
-        int y = PANEL_HEIGHT / 2;
+        int x = panel_width / 3;
+        int y = panel_height / 2;
         
         db_graphics.drawString(msg, x, y);
     }
@@ -542,58 +490,66 @@ public class DumbloxPanel extends JPanel implements Runnable, DumbloxConstants {
     private void printPauseMessage() {
     	// TODO make this msg into a graphic instead of text
     	String msg = "PAUSE";
-        int x = PANEL_WIDTH / 2 - 10;
-        int y = PANEL_HEIGHT / 2;
+        int x = panel_width / 2 - 10;
+        int y = panel_height / 2;
         
         db_graphics.drawString(msg, x, y);
     }
     
     /**
      * is_paused ? false : true
-     * reverse the polarity of the is_paused variable
+     * reverse the polarity of the engine's is_paused variable
      */
     public void togglePause() {
-        is_paused = !is_paused; 
+        queueCommand(Command.TOGGLE_PAUSE);
     }
 
-    public void pauseGame() {
-        is_paused = true;
-    }
-
-    public void resumeGame() {
-        is_paused = false;
-    }
-    
     /**
-     * Calculate the score for the latest line(s) clearing and
-     * update the total score
-     * @param num_rows - the number of lines that were just cleared
+     * Turns task profiling on or off. While it's on, a report of the time taken by each of the engine's
+     * tasks, and of the ticks and commands dropped so far, is printed every PROFILE_REPORT_TICKS ticks.
+     * This runs on the game loop's thread.
      */
-    public void updateScore(int num_rows) {
-        total_score += (game_level + 1) * SCORING_ARRAY[num_rows - 1];
-        //System.out.println(num_rows + " row" + (num_rows > 1 ? "s" : "") + " cleared. Score: "
-        	//+ (game_level + 1) * SCORING_ARRAY[num_rows - 1] + " Total Score: " + total_score);
+    private void switchProfiling() {
+        final Timer timer = engine.getTimer();
+        if (timer.isProfiling()) {
+            timer.setProfiling(0);
+            timer.get(PROFILE_REPORT).cancel();
+            return;
+        }
+
+        timer.setProfiling(TICK_NANOS);
+        timer.schedule(PROFILE_REPORT, new Task<Object>(PROFILE_REPORT_TICKS, -1, null, true) {
+            public Object run(int counter, Object result) {
+                System.out.print(timer.getProfileReport());
+                System.out.println("ticks dropped: " + ticks_dropped + ", commands dropped: " + commands_dropped);
+                timer.resetProfiles();
+                return result;
+            }
+        });
     }
-    
+
     /**
-     * Determine if enough rows have been cleared for the player
-     * to advance to the next level.
-     * @param num_rows - the number of rows that the player just cleared
+     * Queues a command for the game loop. This runs on the event thread, the only one that offers
+     * commands. When the queue is full, a key press is dropped and counted in commands_dropped, but the
+     * pause commands wait for the game loop to make room, since losing one would leave the game running
+     * while the window is minimized.
+     * @param command the command
      */
-    public void checkForLevelChange(int num_rows) {
-        // add num_rows to the total number of rows cleared
-        total_rows_cleared += num_rows;
-        //System.out.println("total_rows_cleared = " + total_rows_cleared);
-        
-        if (total_rows_cleared >= (game_level + 1) * ROWS_PER_LEVEL) {
-        	game_level++;
-            if (game_speed + SPEED_INC <= END_SPEED) {
-            	game_speed += SPEED_INC;
-            
-            	// change the background
-            	BACKGROUND = backgrounds.get(game_level);
+    private void queueCommand(Command command) {
+        while (!commands.offer(command)) {
+            if (!command.retried || !running) {
+                commands_dropped++;
+                return;
             }
+            Thread.yield();
         }
     }
-  
+
+    public void pauseGame() {
+        queueCommand(Command.PAUSE);
+    }
+
+    public void resumeGame() {
+        queueCommand(Command.RESUME);
+    }
 }
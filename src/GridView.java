@@ -0,0 +1,124 @@
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.Point;
+import java.util.HashMap;
+
+public class GridView implements DumbloxConstants {
+    private Point position; //The position of the grid (specifically, the top left corner) in pixel coordinates
+    private ReadOnlyBoard grid;
+    private Graphics2D g;
+    private Image[] sprites; //The pre-loaded square images, indexed by square color
+
+    private AlphaComposite non_transparent; //The default composite for drawing the graphics (non-transparent)
+    private AlphaComposite ghost;           //The composite for drawing the ghost block
+
+    public GridView(Point position, ReadOnlyBoard grid, HashMap<String, Image> images, Graphics2D g) {
+        this.position = position;
+        this.grid = grid;
+        this.g = g;
+
+        // every square of the same color shares one image
+        sprites = new Image[SQUARE_IMAGE_FILES.length];
+        for (int i = 0; i < SQUARE_IMAGE_FILES.length; i++) {
+            if (SQUARE_IMAGE_FILES[i] != null) sprites[i] = images.get(SQUARE_IMAGE_FILES[i]);
+        }
+
+        non_transparent = AlphaComposite.getInstance(AlphaComposite.SRC_OVER);
+        ghost = AlphaComposite.getInstance(AlphaComposite.SRC_OVER, GHOST_ALPHA);
+    }
+
+    public void setGraphics(Graphics2D g) {
+        this.g = g;
+    }
+
+    /**
+     * This is the main draw method for the grid.
+     */
+    public void draw() {
+        g.setColor(Color.WHITE);
+        g.draw3DRect(position.x, position.y, grid.getColumns() * SQUARE_SIZE, grid.getRows() * SQUARE_SIZE, true);
+        drawPile();
+    }
+
+    /**
+     * Draws a square of a block on the grid. This will be called within public method drawBlock.
+     * @param image the image of the square
+     * @param column the column of the square in grid coordinates
+     * @param row the row of the square in grid coordinates
+     */
+    private void drawSquare(Image image, int column, int row) {
+        // don't draw squares that are above the grid
+        if (row < 0) {
+            return;
+        }
+
+        //Translate grid coordinates into window coordinates
+        int x = (column * SQUARE_SIZE) + position.x;
+        int y = (row * SQUARE_SIZE) + position.y;
+
+        g.drawImage(image, x + SQUARE_PADDING, y + SQUARE_PADDING, null);
+    }
+
+    /**
+     * Draws a block on the grid.
+     * @param block the block to be drawn on the grid
+     */
+    public void drawBlock(Block block) {
+        Image image = sprites[block.getColor()];
+        for (int i = 0; i < block.getSquareCount(); i++) {
+            drawSquare(image, block.getSquareX(i), block.getSquareY(i));
+        }
+    }
+
+    /**
+     * Draws a see-through copy of a block where it would land if it was dropped.
+     * @param block the block whose landing spot is drawn
+     */
+    public void drawGhost(Block block) {
+        Image image = sprites[block.getColor()];
+        int distance = grid.dropDistance(block);
+
+        g.setComposite(ghost);
+        for (int i = 0; i < block.getSquareCount(); i++) {
+            drawSquare(image, block.getSquareX(i), block.getSquareY(i) + distance);
+        }
+        g.setComposite(non_transparent);
+    }
+
+    /**
+     * Draws cleared rows that are fading out, from the colors that were copied before they were deleted.
+     * They are drawn where they were, on top of the pile.
+     * @param fade the fading rows
+     */
+    public void drawFade(RowFade fade) {
+        int[] rows = fade.getRows();
+        byte[][] colors = fade.getColors();
+
+        g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, Math.max(fade.getAlpha(), 0.0f)));
+        for (int i = 0; i < rows.length; i++) {
+            for (int j = 0; j < colors[i].length; j++) {
+                byte color = colors[i][j];
+                if (color != EMPTY_SQUARE) drawSquare(sprites[color], j, rows[i]);
+            }
+        }
+        g.setComposite(non_transparent);
+    }
+
+    /**
+     * Draws the pile to the grid. This method is called by draw.
+     */
+    private void drawPile() {
+        for (int i = 0; i < grid.getRows(); i++) {
+            int y = position.y + (SQUARE_SIZE * i);
+            for (int j = 0; j < grid.getColumns(); j++) {
+                int x = position.x + (SQUARE_SIZE * j);
+                byte color = grid.getColor(i, j);
+                if (color != EMPTY_SQUARE) {
+                    g.drawImage(sprites[color], x + SQUARE_PADDING, y + SQUARE_PADDING, null);
+                }
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,265 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * A board that keeps the pile outside of the Java heap in one direct ByteBuffer, so that a big board
+ * doesn't add to the garbage collector's work. Each row of the pile has a record of the same size in
+ * the buffer:
+ *
+ *     [row mask: one long per word][colors: one byte per column, padded to 8][fill count: int]
+ *
+ * Rows are moved around by reordering the table of records, so deleting rows and pushing in garbage
+ * never copies a record.
+ */
+public class OffHeapGrid extends BitBoard implements Board {
+    private ByteBuffer buffer;
+    private int record_size;   //The size of the record of a row in bytes
+    private int colors_offset; //Where the colors, and the fill count start in a record
+    private int fill_offset;
+    private int[] order;       //The record of each row of the grid, from the top down
+    private int[] new_order;   //Reused by deleteRows and addGarbageRows for building the new order
+    private int[] column_top;  //The row of the highest filled square in each column, or rows if it's empty
+    private boolean[] row_deleted; //Marks the rows that are being removed by deleteRows
+
+    public OffHeapGrid(int rows, int columns) {
+        super(rows, columns);
+
+        colors_offset = words * (Long.SIZE / 8);
+        fill_offset = colors_offset + (columns + 7) / 8 * 8;
+        record_size = fill_offset + 4;
+        if ((long) rows * record_size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("A " + rows + " by " + columns + " grid doesn't fit in a buffer");
+        }
+
+        buffer = ByteBuffer.allocateDirect(rows * record_size).order(ByteOrder.nativeOrder());
+        order = new int[rows];
+        new_order = new int[rows];
+        for (int i = 0; i < rows; i++) {
+            order[i] = i;
+            clearRecord(i);
+        }
+        column_top = new int[columns];
+        Arrays.fill(column_top, rows);
+        row_deleted = new boolean[rows];
+    }
+
+    /**
+     * Empties the record of a row.
+     * @param record the record
+     */
+    private void clearRecord(int record) {
+        int start = record * record_size;
+        for (int w = 0; w < words; w++) {
+            buffer.putLong(start + 8 * w, wall_row[w]);
+        }
+        for (int j = 0; j < columns; j++) {
+            buffer.put(start + colors_offset + j, EMPTY_SQUARE);
+        }
+        buffer.putInt(start + fill_offset, 0);
+    }
+
+    /**
+     * Checks if the square of a record at the given column is filled, using the row mask.
+     * @param record the record
+     * @param column the column
+     * @return true if the square is filled
+     */
+    private boolean isFilled(int record, int column) {
+        long word = buffer.getLong(record * record_size + 8 * ((column + 1) / Long.SIZE));
+        return (word & (1L << (column + 1))) != 0;
+    }
+
+    /**
+     * Finds the top of a column by looking down from the given row, for when squares have only moved down
+     * since the row was the top.
+     * @param column the column
+     * @param top the row to start looking from
+     * @return the row of the highest filled square in the column, or rows if it's empty
+     */
+    private int findColumnTop(int column, int top) {
+        while (top < rows && !isFilled(order[top], column)) {
+            top++;
+        }
+        return top;
+    }
+
+    public byte getColor(int row, int column) {
+        return buffer.get(order[row] * record_size + colors_offset + column);
+    }
+
+    protected long rowWord(int row, int word) {
+        if (row < 0) return wall_row[word];
+        if (row >= rows) return FULL_WORD;
+        return buffer.getLong(order[row] * record_size + 8 * word);
+    }
+
+    public ArrayList<Integer> addBlockToPile(Block block) {
+        for (int i = 0; i < block.getSquareCount(); i++) {
+            int x = block.getSquareX(i);
+            int y = block.getSquareY(i);
+
+            if (endsGame(y, x)) game_over = true;
+            if (y < 0) continue;
+
+            int record = order[y];
+            int start = record * record_size;
+            boolean filled = isFilled(record, x);
+
+            // add the square to the pile
+            if (!filled) buffer.putInt(start + fill_offset, buffer.getInt(start + fill_offset) + 1);
+            buffer.put(start + colors_offset + x, block.getColor());
+            int bit = x + 1;
+            int word_start = start + 8 * (bit / Long.SIZE);
+            buffer.putLong(word_start, buffer.getLong(word_start) | (1L << bit));
+            if (y < column_top[x]) column_top[x] = y;
+        }
+
+        return findCompletedRows(block);
+    }
+
+    public void deleteRows(ArrayList<Integer> row_list) {
+        if (row_list.isEmpty()) return;
+
+        for (int i = 0; i < row_list.size(); i++) {
+            row_deleted[row_list.get(i).intValue()] = true;
+        }
+
+        //The records of the deleted rows are emptied and become the new top rows, and every other row
+        //keeps its record
+        int count = 0;
+        for (int i = 0; i < rows; i++) {
+            if (row_deleted[i]) {
+                clearRecord(order[i]);
+                new_order[count++] = order[i];
+            }
+        }
+        int next = count;
+        for (int i = 0; i < rows; i++) {
+            if (row_deleted[i]) {
+                row_deleted[i] = false;
+            }
+            else {
+                new_order[next++] = order[i];
+            }
+        }
+        int[] old_order = order;
+        order = new_order;
+        new_order = old_order;
+
+        //Rows only ever move down, so the new top of each column is found by looking down from the old one
+        for (int j = 0; j < columns; j++) {
+            column_top[j] = findColumnTop(j, column_top[j]);
+        }
+    }
+
+    public void addGarbageRows(int count, int hole) {
+        checkGarbage(count, hole);
+
+        //Every row moves up and the records of the top rows are reused for the garbage rows
+        for (int i = 0; i < rows; i++) {
+            new_order[i] = order[(i + count) % rows];
+        }
+        int[] old_order = order;
+        order = new_order;
+        new_order = old_order;
+
+        for (int i = rows - count; i < rows; i++) {
+            int start = order[i] * record_size;
+            if (buffer.getInt(start + fill_offset) != 0) game_over = true;
+
+            int hole_bit = hole + 1;
+            for (int w = 0; w < words; w++) {
+                long word = w == hole_bit / Long.SIZE ? ~(1L << hole_bit) : FULL_WORD;
+                buffer.putLong(start + 8 * w, word);
+            }
+            for (int j = 0; j < columns; j++) {
+                buffer.put(start + colors_offset + j, j == hole ? EMPTY_SQUARE : GARBAGE_SQUARE);
+            }
+            buffer.putInt(start + fill_offset, columns - 1);
+        }
+
+        for (int j = 0; j < columns; j++) {
+            if (j != hole || column_top[j] < rows) {
+                column_top[j] -= count;
+            }
+
+            //Squares that were pushed out of the top of the grid are gone
+            if (column_top[j] < 0) {
+                column_top[j] = findColumnTop(j, 0);
+            }
+        }
+    }
+
+    /**
+     * Cascade gravity (see BitBoard.findClusterDrops()). The records of the rows that the clusters fell
+     * through are written again in place.
+     * @return a list of the rows that are full after everything has landed. The same list is reused by
+     * addBlockToPile.
+     */
+    public ArrayList<Integer> dropClusters() {
+        int top = getPileTop();
+        if (findClusterDrops(top)) {
+            for (int i = top; i < rows; i++) {
+                int start = order[i] * record_size;
+                for (int w = 0; w < words; w++) {
+                    buffer.putLong(start + 8 * w, wall_row[w]);
+                }
+                int fill = 0;
+                for (int j = 0; j < columns; j++) {
+                    byte color = getDroppedColor(i, j);
+                    buffer.put(start + colors_offset + j, color);
+                    if (color != EMPTY_SQUARE) {
+                        int word_start = start + 8 * ((j + 1) / Long.SIZE);
+                        buffer.putLong(word_start, buffer.getLong(word_start) | (1L << (j + 1)));
+                        fill++;
+                    }
+                }
+                buffer.putInt(start + fill_offset, fill);
+            }
+
+            //Squares only moved down their own columns
+            for (int j = 0; j < columns; j++) {
+                column_top[j] = findColumnTop(j, column_top[j]);
+            }
+        }
+        return findCompletedRows(top, rows);
+    }
+
+    protected boolean isRowFull(int row) {
+        return buffer.getInt(order[row] * record_size + fill_offset) == columns;
+    }
+
+    public int getColumnTop(int column) {
+        return column_top[column];
+    }
+
+    public BoardSnapshot snapshot() {
+        return new BoardSnapshot(this);
+    }
+
+    public void restore(BoardSnapshot snapshot) {
+        if (snapshot.getRows() != rows || snapshot.getColumns() != columns) {
+            throw new IllegalArgumentException("The snapshot isn't the same size as the grid");
+        }
+
+        //Each row goes back into the record of the same number
+        for (int i = 0; i < rows; i++) {
+            order[i] = i;
+            int start = i * record_size;
+            long[] bits = snapshot.getRowBits(i);
+            for (int w = 0; w < words; w++) {
+                buffer.putLong(start + 8 * w, bits[w]);
+            }
+            for (int j = 0; j < columns; j++) {
+                buffer.put(start + colors_offset + j, snapshot.getColor(i, j));
+            }
+            buffer.putInt(start + fill_offset, snapshot.getRowFill(i));
+        }
+        for (int j = 0; j < columns; j++) {
+            column_top[j] = snapshot.getColumnTop(j);
+        }
+        game_over = snapshot.isGameOver();
+    }
+}
\ No newline at end of file
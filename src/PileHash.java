@@ -0,0 +1,129 @@
+import java.util.Random;
+
+/**
+ * The keys that the hash of a pile is made from, for boards of a given width. Each square has a Zobrist
+ * key for its column and color, and a row's hash is the XOR of the keys of its squares, so an empty row
+ * hashes to 0. The hash of the pile puts each row's hash at the row it's in with a polynomial:
+ *
+ *     hash = the sum of rowHash(i) * K^i over the rows i of the board, mod 2^64
+ *
+ * where K is an odd key. Moving a run of rows down by n rows multiplies its part of the sum by K^n, and
+ * moving it up divides it by K^n (K is odd, so it has an inverse mod 2^64), so a board that keeps the
+ * hash up to date (Grid) only has to hash again the rows that move on their own. The keys always come
+ * from the same seed, so two boards of the same size with the same squares have the same hash.
+ */
+public class PileHash implements DumbloxConstants {
+    private final long[][] square_keys; //The key of each color in each column; empty squares are 0
+    private final long garbage_key;     //The hash of a row of garbage without a hole
+    private final long row_key;         //K, which places a row's hash at its row
+    private final long inverse_row_key; //The inverse of K mod 2^64
+
+    public PileHash(int columns) {
+        Random keys = new Random(HASH_SEED);
+        square_keys = new long[columns][SQUARE_IMAGE_FILES.length];
+        long garbage = 0;
+        for (int j = 0; j < columns; j++) {
+            for (int c = 1; c < SQUARE_IMAGE_FILES.length; c++) {
+                square_keys[j][c] = keys.nextLong();
+            }
+            garbage ^= square_keys[j][GARBAGE_SQUARE];
+        }
+        garbage_key = garbage;
+        row_key = keys.nextLong() | 1;
+
+        //Newton's method doubles the number of correct low bits each time, starting from the 3 bits that
+        //every odd number gets right as its own inverse
+        long inverse = row_key;
+        for (int i = 0; i < 5; i++) {
+            inverse *= 2 - row_key * inverse;
+        }
+        inverse_row_key = inverse;
+    }
+
+    /**
+     * Gets the key of a square.
+     * @param column the column of the square
+     * @param color the color of the square
+     * @return the key, which is 0 for EMPTY_SQUARE
+     */
+    public long getSquareKey(int column, byte color) {
+        return square_keys[column][color];
+    }
+
+    /**
+     * Gets the hash of a garbage row.
+     * @param hole the column that is empty in the row
+     * @return the hash of the row
+     */
+    public long getGarbageHash(int hole) {
+        return garbage_key ^ square_keys[hole][GARBAGE_SQUARE];
+    }
+
+    /**
+     * Gets K to a power, which moves a row's part of the hash down by that many rows.
+     * @param exponent the power
+     * @return K^exponent mod 2^64
+     */
+    public long getRowPower(int exponent) {
+        return power(row_key, exponent);
+    }
+
+    /**
+     * Gets the inverse of K to a power, which moves a row's part of the hash up by that many rows.
+     * @param exponent the power
+     * @return K^-exponent mod 2^64
+     */
+    public long getInverseRowPower(int exponent) {
+        return power(inverse_row_key, exponent);
+    }
+
+    private static long power(long base, int exponent) {
+        long result = 1;
+        while (exponent != 0) {
+            if ((exponent & 1) != 0) result *= base;
+            base *= base;
+            exponent >>>= 1;
+        }
+        return result;
+    }
+
+    /**
+     * Mixes the sum of a pile into its final hash with the finalizer from MurmurHash3, so that every bit
+     * of the hash depends on every bit of the sum.
+     * @param sum the sum of the rows' parts
+     * @return the hash of the pile
+     */
+    public static long mix(long sum) {
+        sum ^= sum >>> 33;
+        sum *= 0xff51afd7ed558ccdL;
+        sum ^= sum >>> 33;
+        sum *= 0xc4ceb9fe1a85ec53L;
+        sum ^= sum >>> 33;
+        return sum;
+    }
+
+    /**
+     * Hashes the pile of any board from scratch, one square at a time from the floor up to the top of the
+     * pile, for the boards that don't keep their hash up to date.
+     * @param board the board
+     * @return the hash of the pile, the same as a Grid with the same squares would have
+     */
+    public long hash(ReadOnlyBoard board) {
+        int rows = board.getRows();
+        int top = rows;
+        for (int j = 0; j < board.getColumns(); j++) {
+            top = Math.min(top, board.getColumnTop(j));
+        }
+
+        //Horner's rule from the bottom row up to the top of the pile, then move it all down to the top
+        long sum = 0;
+        for (int i = rows - 1; i >= top; i--) {
+            long row = 0;
+            for (int j = 0; j < board.getColumns(); j++) {
+                row ^= square_keys[j][board.getColor(i, j)];
+            }
+            sum = sum * row_key + row;
+        }
+        return mix(sum * getRowPower(top));
+    }
+}
\ No newline at end of file
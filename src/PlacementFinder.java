@@ -0,0 +1,223 @@
+import java.util.Arrays;
+
+/**
+ * Finds every place where a block can come to rest on a board, the way a player could get it there
+ * with the game's moves: left, right, down and both rotations, starting from where blocks appear. That
+ * includes tucks under overhangs and spins into gaps that a plain drop can't reach.
+ *
+ * The search is breadth first over (rotation, x, y) and moves a single Block with Block.move() and
+ * Block.rotate(), so it follows the same rules as the game. Visited states are kept in a bitmap and
+ * the queue is an int array, both reused for every search, so a search doesn't allocate anything.
+ * A finder is made for one board size and can be reused for any number of searches on boards of that
+ * size, but it isn't thread-safe.
+ */
+public class PlacementFinder implements DumbloxConstants {
+    //How far outside the grid the center of a block can be while its squares are still inside
+    private static final int MARGIN = 4;
+    private static final int MAX_ROTATIONS = 4;
+
+    private int rows;
+    private int columns;
+    private int width;        //The number of x positions and y positions that a state can have
+    private int height;
+    private long[] visited;   //One bit per state that has been reached
+    private long[] placed;    //One bit per resting place that has been found (see canonical)
+    private int[] queue;      //The states that are still to be searched
+    private int[] canonical;  //For each rotation, the first rotation with the same shape
+    private Block block;      //The block that is moved around by the search
+
+    private int count;        //The number of placements that were found
+    private int[] placement_x;
+    private int[] placement_y;
+    private int[] placement_rotation;
+
+    /**
+     * Makes a finder for boards of the given size.
+     * @param rows the number of rows of the boards
+     * @param columns the number of columns of the boards
+     */
+    public PlacementFinder(int rows, int columns) {
+        this.rows = rows;
+        this.columns = columns;
+        width = columns + 2 * MARGIN;
+        height = rows + 2 * MARGIN;
+
+        int states = MAX_ROTATIONS * width * height;
+        visited = new long[(states + Long.SIZE - 1) / Long.SIZE];
+        placed = new long[visited.length];
+        queue = new int[states];
+        canonical = new int[MAX_ROTATIONS];
+        block = new Block(0, 0, BlockType.O_BLOCK);
+
+        placement_x = new int[states];
+        placement_y = new int[states];
+        placement_rotation = new int[states];
+    }
+
+    /**
+     * Finds the placements of a block that appears where the game puts new blocks.
+     * @param board the board, which must be the size that the finder was made for
+     * @param type the type of block
+     * @return the number of placements that were found
+     */
+    public int find(ReadOnlyBoard board, BlockType type) {
+        return find(board, type, board.getColumns() / 2, ACTIVE_BLOCK_Y, 0);
+    }
+
+    /**
+     * Finds every place where a block can come to rest when it starts from the given position. Places
+     * that cover the same squares are only counted once, even when they can be reached in more than one
+     * rotation.
+     * @param board the board, which must be the size that the finder was made for
+     * @param type the type of block
+     * @param x the column of the center of the block to start from
+     * @param y the row of the center of the block to start from
+     * @param rotation the rotation of the block to start from
+     * @return the number of placements that were found, which is 0 if the block doesn't fit where it starts
+     */
+    public int find(ReadOnlyBoard board, BlockType type, int x, int y, int rotation) {
+        if (board.getRows() != rows || board.getColumns() != columns) {
+            throw new IllegalArgumentException("The finder was made for a " + rows + " by " + columns + " board");
+        }
+
+        Arrays.fill(visited, 0);
+        Arrays.fill(placed, 0);
+        count = 0;
+
+        //Rotations with the same shape (like every rotation of an O block) cover the same squares when
+        //their masks are in the same place
+        block.reset(0, 0, type);
+        int rotations = block.getRotationCount();
+        for (int r = 0; r < rotations; r++) {
+            block.setRotation(r);
+            int[] masks = block.getRowMasks();
+            canonical[r] = r;
+            for (int s = 0; s < r; s++) {
+                block.setRotation(s);
+                if (Arrays.equals(masks, block.getRowMasks())) {
+                    canonical[r] = canonical[s];
+                    break;
+                }
+            }
+        }
+
+        block.setRotation(rotation);
+        block.setPosition(x, y);
+        if (!inRange(x, y) || board.collides(block)) return 0;
+
+        int head = 0;
+        int tail = 0;
+        int start = state(rotation, x, y);
+        setBit(visited, start);
+        queue[tail++] = start;
+
+        while (head < tail) {
+            int state = queue[head++];
+            int r = state / (width * height);
+            int sx = state % width - MARGIN;
+            int sy = state / width % height - MARGIN;
+
+            //A block that can't move down comes to rest here
+            block.setRotation(r);
+            block.setPosition(sx, sy);
+            if (!block.move(board, Direction.DOWN)) {
+                addPlacement(r, sx, sy);
+            }
+            else {
+                tail = visit(tail);
+            }
+
+            block.setPosition(sx, sy);
+            if (block.move(board, Direction.LEFT)) tail = visit(tail);
+            block.setPosition(sx, sy);
+            if (block.move(board, Direction.RIGHT)) tail = visit(tail);
+            block.setPosition(sx, sy);
+            if (block.rotate(board, RotateDirection.CLOCKWISE)) tail = visit(tail);
+            block.setRotation(r);
+            if (block.rotate(board, RotateDirection.C_CLOCKWISE)) tail = visit(tail);
+        }
+
+        return count;
+    }
+
+    /**
+     * Queues the block's current state if it hasn't been reached before.
+     * @param tail the end of the queue
+     * @return the new end of the queue
+     */
+    private int visit(int tail) {
+        if (!inRange(block.getX(), block.getY())) return tail;
+
+        int state = state(block.getRotation(), block.getX(), block.getY());
+        if (!getBit(visited, state)) {
+            setBit(visited, state);
+            queue[tail++] = state;
+        }
+        return tail;
+    }
+
+    /**
+     * Records a resting place, unless the same squares have already been found in another rotation.
+     * @param rotation the rotation of the block
+     * @param x the column of the center of the block
+     * @param y the row of the center of the block
+     */
+    private void addPlacement(int rotation, int x, int y) {
+        //A resting block is inside the grid, so its mask position fits in a state number
+        int key = state(canonical[rotation], block.getMaskLeft(), block.getMaskTop());
+        if (getBit(placed, key)) return;
+        setBit(placed, key);
+
+        placement_x[count] = x;
+        placement_y[count] = y;
+        placement_rotation[count] = rotation;
+        count++;
+    }
+
+    private boolean inRange(int x, int y) {
+        return x >= -MARGIN && x < columns + MARGIN && y >= -MARGIN && y < rows + MARGIN;
+    }
+
+    private int state(int rotation, int x, int y) {
+        return (rotation * height + y + MARGIN) * width + x + MARGIN;
+    }
+
+    private static boolean getBit(long[] bits, int i) {
+        return (bits[i / Long.SIZE] & (1L << i)) != 0;
+    }
+
+    private static void setBit(long[] bits, int i) {
+        bits[i / Long.SIZE] |= 1L << i;
+    }
+
+    /**
+     * Gets the number of placements that the last search found.
+     * @return the number of placements
+     */
+    public int getCount() {
+        return count;
+    }
+
+    public int getX(int i) {
+        return placement_x[i];
+    }
+
+    public int getY(int i) {
+        return placement_y[i];
+    }
+
+    public int getRotation(int i) {
+        return placement_rotation[i];
+    }
+
+    /**
+     * Puts a block into one of the placements that the last search found, for example to try it out on
+     * a BoardSnapshot with place().
+     * @param i the index of the placement
+     * @param block the block, which must be of the type that was searched for
+     */
+    public void moveTo(int i, Block block) {
+        block.setRotation(placement_rotation[i]);
+        block.setPosition(placement_x[i], placement_y[i]);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,257 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * The straightforward board: one color per square and nothing else. Every check looks at the squares
+ * one at a time, the way the game originally worked, so this is slow on wide boards but easy to trust.
+ * It is kept as the baseline for BoardBenchmark and for checking the faster boards against.
+ */
+public class ReferenceGrid implements Board, DumbloxConstants {
+    private int rows;
+    private int columns;
+    private byte[][] pile;     //The color of every square of the pile, or EMPTY_SQUARE
+    private ArrayList<Integer> completed_rows;
+    private boolean game_over;
+    private PileHash hash_keys; //The keys that the pile is hashed with, made the first time they're needed
+
+    public ReferenceGrid(int rows, int columns) {
+        if (rows < 1 || columns < 1) {
+            throw new IllegalArgumentException("The grid must have at least one row and one column");
+        }
+
+        this.rows = rows;
+        this.columns = columns;
+        this.game_over = false;
+
+        pile = new byte[rows][columns];
+        completed_rows = new ArrayList<Integer>();
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public byte getColor(int row, int column) {
+        return pile[row][column];
+    }
+
+    /**
+     * Checks every square of a row.
+     * @param row the row
+     * @return true if none of the squares are empty
+     */
+    private boolean isRowFull(int row) {
+        for (int j = 0; j < columns; j++) {
+            if (pile[row][j] == EMPTY_SQUARE) return false;
+        }
+        return true;
+    }
+
+    public ArrayList<Integer> addBlockToPile(Block block) {
+        completed_rows.clear();
+
+        for (int i = 0; i < block.getSquareCount(); i++) {
+            int x = block.getSquareX(i);
+            int y = block.getSquareY(i);
+
+            if (y < 0) {
+                game_over = true;
+                continue;
+            }
+            if (y == 0 && pile[y][x] != EMPTY_SQUARE) game_over = true;
+            pile[y][x] = block.getColor();
+        }
+
+        //Only the rows that the block landed in can have been completed by it
+        int top = Math.max(block.getMaskTop(), 0);
+        int bottom = Math.min(block.getMaskTop() + block.getRowMasks().length, rows);
+        for (int i = top; i < bottom; i++) {
+            if (isRowFull(i)) completed_rows.add(Integer.valueOf(i));
+        }
+        return completed_rows;
+    }
+
+    public void deleteRows(ArrayList<Integer> row_list) {
+        //Delete the rows from the top down, so that the rows still to be deleted don't move
+        ArrayList<Integer> sorted = new ArrayList<Integer>(row_list);
+        Collections.sort(sorted);
+        for (int k = 0; k < sorted.size(); k++) {
+            int row = sorted.get(k).intValue();
+            for (int i = row; i > 0; i--) {
+                System.arraycopy(pile[i - 1], 0, pile[i], 0, columns);
+            }
+            Arrays.fill(pile[0], EMPTY_SQUARE);
+        }
+    }
+
+    public void addGarbageRows(int count, int hole) {
+        if (count < 0 || count > rows || hole < 0 || hole >= columns) {
+            throw new IllegalArgumentException("Invalid garbage: " + count + " rows with a hole at " + hole);
+        }
+
+        for (int i = 0; i < count; i++) {
+            for (int j = 0; j < columns; j++) {
+                if (pile[i][j] != EMPTY_SQUARE) game_over = true;
+            }
+        }
+        for (int i = 0; i < rows - count; i++) {
+            System.arraycopy(pile[i + count], 0, pile[i], 0, columns);
+        }
+        for (int i = rows - count; i < rows; i++) {
+            Arrays.fill(pile[i], GARBAGE_SQUARE);
+            pile[i][hole] = EMPTY_SQUARE;
+        }
+    }
+
+    /**
+     * Cascade gravity, square by square. The clusters are found with a flood fill from each square that
+     * isn't in one yet, going from the bottom right corner up, which puts them in the order that they
+     * fall in. Then each cluster falls as far as the smallest gap under its bottom squares, over and
+     * over until none of them can move.
+     * @return a list of the rows that are full after everything has landed
+     */
+    public ArrayList<Integer> dropClusters() {
+        //The number of the cluster of each square, or -1 if it's empty
+        int[][] cluster = new int[rows][columns];
+        for (int i = 0; i < rows; i++) {
+            Arrays.fill(cluster[i], -1);
+        }
+
+        //The squares of each cluster, as row * columns + column
+        ArrayList<ArrayList<Integer>> clusters = new ArrayList<ArrayList<Integer>>();
+        for (int i = rows - 1; i >= 0; i--) {
+            for (int j = columns - 1; j >= 0; j--) {
+                if (pile[i][j] == EMPTY_SQUARE || cluster[i][j] >= 0) continue;
+
+                int number = clusters.size();
+                ArrayList<Integer> squares = new ArrayList<Integer>();
+                ArrayList<Integer> stack = new ArrayList<Integer>();
+                cluster[i][j] = number;
+                stack.add(Integer.valueOf(i * columns + j));
+                while (!stack.isEmpty()) {
+                    int square = stack.remove(stack.size() - 1).intValue();
+                    squares.add(Integer.valueOf(square));
+                    int row = square / columns;
+                    int column = square % columns;
+                    int[][] neighbors = {{row - 1, column}, {row + 1, column}, {row, column - 1}, {row, column + 1}};
+                    for (int k = 0; k < neighbors.length; k++) {
+                        int y = neighbors[k][0];
+                        int x = neighbors[k][1];
+                        if (y < 0 || y >= rows || x < 0 || x >= columns) continue;
+                        if (pile[y][x] == EMPTY_SQUARE || cluster[y][x] >= 0) continue;
+                        cluster[y][x] = number;
+                        stack.add(Integer.valueOf(y * columns + x));
+                    }
+                }
+                clusters.add(squares);
+            }
+        }
+
+        boolean moving = true;
+        while (moving) {
+            moving = false;
+            for (int c = 0; c < clusters.size(); c++) {
+                ArrayList<Integer> squares = clusters.get(c);
+
+                int distance = Integer.MAX_VALUE;
+                for (int k = 0; k < squares.size(); k++) {
+                    int row = squares.get(k).intValue() / columns;
+                    int column = squares.get(k).intValue() % columns;
+                    if (row + 1 < rows && cluster[row + 1][column] == c) continue;
+
+                    int gap = 0;
+                    while (row + gap + 1 < rows && cluster[row + gap + 1][column] < 0) {
+                        gap++;
+                    }
+                    distance = Math.min(distance, gap);
+                }
+                if (distance == 0) continue;
+
+                byte[] colors = new byte[squares.size()];
+                for (int k = 0; k < squares.size(); k++) {
+                    int row = squares.get(k).intValue() / columns;
+                    int column = squares.get(k).intValue() % columns;
+                    colors[k] = pile[row][column];
+                    pile[row][column] = EMPTY_SQUARE;
+                    cluster[row][column] = -1;
+                }
+                for (int k = 0; k < squares.size(); k++) {
+                    int square = squares.get(k).intValue() + distance * columns;
+                    pile[square / columns][square % columns] = colors[k];
+                    cluster[square / columns][square % columns] = c;
+                    squares.set(k, Integer.valueOf(square));
+                }
+                moving = true;
+            }
+        }
+
+        completed_rows.clear();
+        for (int i = 0; i < rows; i++) {
+            if (isRowFull(i)) completed_rows.add(Integer.valueOf(i));
+        }
+        return completed_rows;
+    }
+
+    public boolean collides(Block block) {
+        for (int i = 0; i < block.getSquareCount(); i++) {
+            int x = block.getSquareX(i);
+            int y = block.getSquareY(i);
+
+            if (x < 0 || x >= columns || y >= rows) return true;
+            if (y >= 0 && pile[y][x] != EMPTY_SQUARE) return true;
+        }
+        return false;
+    }
+
+    public int getColumnTop(int column) {
+        int top = 0;
+        while (top < rows && pile[top][column] == EMPTY_SQUARE) {
+            top++;
+        }
+        return top;
+    }
+
+    public int dropDistance(Block block) {
+        int x = block.getX();
+        int y = block.getY();
+        int distance = 0;
+        while (true) {
+            block.setPosition(x, y + distance + 1);
+            if (collides(block)) break;
+            distance++;
+        }
+        block.setPosition(x, y);
+        return distance;
+    }
+
+    public BoardSnapshot snapshot() {
+        return new BoardSnapshot(this);
+    }
+
+    public void restore(BoardSnapshot snapshot) {
+        if (snapshot.getRows() != rows || snapshot.getColumns() != columns) {
+            throw new IllegalArgumentException("The snapshot isn't the same size as the grid");
+        }
+
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < columns; j++) {
+                pile[i][j] = snapshot.getColor(i, j);
+            }
+        }
+        game_over = snapshot.isGameOver();
+    }
+
+    public long getHash() {
+        if (hash_keys == null) hash_keys = new PileHash(columns);
+        return hash_keys.hash(this);
+    }
+
+    public boolean isGameOver() {
+        return game_over;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,32 @@
+/**
+ * Cleared rows that are still fading out on the screen. The rows are already gone from the board by
+ * the time they are drawn, so the fade keeps a copy of just their colors from before they were deleted
+ * and draws them from that, on top of the board.
+ */
+public class RowFade {
+    private int[] rows;       //The rows that were cleared
+    private byte[][] colors;  //The colors of each cleared row, in the same order as rows
+    private float alpha;      //The alpha that the rows are drawn with, which goes down to 0
+
+    public RowFade(int[] rows, byte[][] colors) {
+        this.rows = rows;
+        this.colors = colors;
+        this.alpha = 1.0f;
+    }
+
+    public int[] getRows() {
+        return rows;
+    }
+
+    public byte[][] getColors() {
+        return colors;
+    }
+
+    public float getAlpha() {
+        return alpha;
+    }
+
+    public void setAlpha(float alpha) {
+        this.alpha = alpha;
+    }
+}
\ No newline at end of file
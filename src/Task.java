@@ -1,13 +1,25 @@
 
-public abstract class Task {
+/**
+ * Something that the Timer runs after a number of ticks, and maybe again and again after that. The
+ * state that a task carries from one run to the next is of type T, so it comes back without a cast.
+ * A scheduled task is also its own handle: it can be turned on and off, or cancelled for good.
+ */
+public abstract class Task<T> {
     private int ticks; // The number of ticks until this task will be fired
-    private int timer; // This timer variable will count down on every tick
     private int counter; // This counter will increment on every repeat of the task
     private int repeats; // The number of times this task will be repeated
-    private Object result; // This holds any information that the task will need to hold
+    private T result; // This holds any information that the task will need to hold
                            // onto and/or pass on between repeats.
     private boolean on; //This determines whether the task will execute (or count down to execution)
-                        // in the tick() method
+    
+    // Where the task is in the timing wheel of the timer that it's scheduled in (see Timer)
+    Timer owner;     // the timer, or null if the task isn't scheduled
+    String name;     // the name that the task is scheduled under, or null if it has none
+    long due;        // the tick that the task fires on next, while it's on
+    int remaining;   // the number of ticks that were left when the task was turned off
+    Task<?> prev;    // the tasks before and after this one in its slot of the wheel
+    Task<?> next;
+    TaskProfile profile; // where the timer adds up the task's runs while profiling is on
     
     /**
      * This is the more complicated constructor which lets you set all of the options.
@@ -16,9 +28,8 @@ public abstract class Task {
      * @param first_result - an object containing any state that you want the task to have
      * @param on - the initial on/off state for the task
      */
-    public Task(int ticks, int repeats, Object first_result, boolean on) {
+    public Task(int ticks, int repeats, T first_result, boolean on) {
         this.ticks = ticks;
-        this.timer = ticks;
         this.counter = 0;
         this.repeats = repeats;
         this.result = first_result;
@@ -31,9 +42,8 @@ public abstract class Task {
      * @param first_result - an object containing any state you want the task to have
      * @param on - the initial on/off state for the task
      */
-    public Task(Object first_result, boolean on) {
+    public Task(T first_result, boolean on) {
         this.ticks = 1;
-        this.timer = ticks;
         this.counter = 0;
         this.repeats = -1; //Setting repeats to -1 makes sure the task never gets deleted from the timer
         this.result = first_result;
@@ -45,9 +55,8 @@ public abstract class Task {
      * @param ticks - the number of time ticks before execution
      * @param first_result - an object containing any state you want the task to have
      */
-    public Task(int ticks, Object first_result) {
+    public Task(int ticks, T first_result) {
         this.ticks = ticks;
-        this.timer = ticks;
         this.counter = 0;
         this.repeats = 1;
         this.result = first_result;
@@ -62,26 +71,56 @@ public abstract class Task {
         return !on;
     }
     
+    /**
+     * Turns the task on. A task that was turned off picks up its count down where it stopped.
+     */
     public void turnOn() {
+        if (on) return;
         on = true;
+        if (owner != null) owner.resume(this);
     }
     
+    /**
+     * Turns the task off, which stops it from counting down until it is turned on again.
+     */
     public void turnOff() {
+        if (!on) return;
         on = false;
+        if (owner != null) owner.pause(this);
+    }
+    
+    /**
+     * Takes the task out of the timer that it's scheduled in, so that it never runs again. A task can
+     * cancel itself from run().
+     */
+    public void cancel() {
+        if (owner != null) owner.cancel(this);
+    }
+    
+    /**
+     * Checks if the task is still scheduled in a timer, which stops being true when it has run out of
+     * repeats or has been cancelled or replaced.
+     * @return true if the task is scheduled
+     */
+    public boolean isScheduled() {
+        return owner != null;
+    }
+    
+    /**
+     * Gets the number of ticks between repeats of the task.
+     * @return the number of ticks
+     */
+    public int getTicks() {
+        return ticks;
     }
     
     /**
-     * Counts one tick of time. If the time for this task has run out, then the run() method will be fired.
+     * Fires the task. This is called by the timer when the task's time has come.
      * @return false if this task has no more repeats left, true otherwise
      */
-    public boolean tick() {
-        if (!on) return true;
-        if (--timer <= 0) {
-            result = run(counter++, result);
-            repeats--;
-            timer = ticks; //reset timer
-        }
-        
+    boolean fire() {
+        result = run(counter++, result);
+        repeats--;
         return (repeats != 0);
     }
     
@@ -91,7 +130,7 @@ public abstract class Task {
      * @param counter an incremented number representing the number of times this task has been 
      * fired previously (starting with 0)
      * @param result holds any state or information that the task may need
-     * @return an Object containing any information that the next repeat of the task may need
+     * @return any information that the next repeat of the task may need
      */
-    public abstract Object run(int counter, Object result);
+    public abstract T run(int counter, T result);
 }
@@ -0,0 +1,68 @@
+/**
+ * How much time a task has taken, kept by a Timer while profiling is on (see Timer.setProfiling()).
+ * Tasks are profiled under their name, or under their class name if they were scheduled without one,
+ * so a task that is scheduled again and again under the same name adds up in one profile.
+ */
+public class TaskProfile {
+    private String label;      //The name of the task, or the name of its class
+    private int runs;          //The number of times the task has run
+    private long total_nanos;  //The time that all of those runs took together
+    private long max_nanos;    //The time that the longest run took
+    private long late_ticks;   //The ticks that the task ran late by, added up over all of its runs
+
+    TaskProfile(String label) {
+        this.label = label;
+    }
+
+    /**
+     * Adds one run of the task.
+     * @param nanos the time that the run took
+     * @param late the number of ticks that the run was late by
+     */
+    void record(long nanos, long late) {
+        runs++;
+        total_nanos += nanos;
+        if (nanos > max_nanos) max_nanos = nanos;
+        late_ticks += late;
+    }
+
+    void reset() {
+        runs = 0;
+        total_nanos = 0;
+        max_nanos = 0;
+        late_ticks = 0;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public int getRuns() {
+        return runs;
+    }
+
+    public long getTotalNanos() {
+        return total_nanos;
+    }
+
+    public long getMaxNanos() {
+        return max_nanos;
+    }
+
+    public long getAverageNanos() {
+        return runs == 0 ? 0 : total_nanos / runs;
+    }
+
+    public long getLateTicks() {
+        return late_ticks;
+    }
+
+    /**
+     * Formats the profile as one line of a report.
+     * @return the runs, the total, average and longest run time, and the late ticks
+     */
+    public String toString() {
+        return String.format("%-32s %8d %10.3f ms %10.1f us %10.1f us %8d",
+                label, runs, total_nanos / 1e6, getAverageNanos() / 1e3, max_nanos / 1e3, late_ticks);
+    }
+}
\ No newline at end of file
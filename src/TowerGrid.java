@@ -0,0 +1,415 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * A board for the endless tower mode, where the grid can be hundreds of thousands of rows tall. Only the
+ * rows from the floor up to the top of the pile are stored. Every row above them is empty and takes no
+ * memory at all, so memory grows with the height of the pile instead of the height of the grid.
+ *
+ * The stored rows sit in an array in order from the bottom up, with gaps where rows have been deleted.
+ * A Fenwick tree counts the rows that are still there, so finding the row at a given height and deleting
+ * a row both take O(log n) instead of moving every row above it. The array is compacted once it has
+ * more gaps than rows.
+ */
+public class TowerGrid extends BitBoard implements Board {
+    private Row[] slots;   //The stored rows from the bottom up, or null where a row has been deleted
+    private int[] tree;    //The Fenwick tree over slots, counting the rows that haven't been deleted
+    private int start;     //The slot of the bottom row; the slots below it are free for garbage rows
+    private int end;       //The slot after the top row
+    private int height;    //The number of stored rows
+    private int[] column_height; //The height of the highest filled square in each column above the floor
+    private int[] deleted_heights; //Reused by deleteRows for the heights and slots of the deleted rows
+    private int[] deleted_slots;
+    private int epoch;     //Counts the snapshots that have been taken of the grid (see ownRow())
+
+    private static final int MIN_CAPACITY = 16;
+
+    /**
+     * One stored row of the pile. Its arrays may be shared with snapshots, so they are copied before
+     * they are changed if they were made before the last snapshot was taken.
+     */
+    private static class Row {
+        byte[] colors;       //The color of every square of the row, or EMPTY_SQUARE
+        long[] bits;         //The row mask, including the walls
+        int fill;            //The number of filled squares
+        int epoch;           //The epoch that the arrays were made in
+
+        Row(int columns, long[] wall_row, int epoch) {
+            colors = new byte[columns];
+            bits = wall_row.clone();
+            this.epoch = epoch;
+        }
+
+        Row(byte[] colors, long[] bits, int fill, int epoch) {
+            this.colors = colors;
+            this.bits = bits;
+            this.fill = fill;
+            this.epoch = epoch;
+        }
+    }
+
+    public TowerGrid(int rows, int columns) {
+        super(rows, columns);
+
+        column_height = new int[columns];
+        deleted_heights = new int[MAX_ROWS_PER_BLOCK];
+        deleted_slots = new int[MAX_ROWS_PER_BLOCK];
+        height = 0;
+        epoch = 0;
+        rebuild(MIN_CAPACITY);
+    }
+
+    /**
+     * Makes sure that the arrays of a row belong to the grid before they are changed. Taking a snapshot
+     * starts a new epoch, so the arrays of a row from an earlier epoch may be shared with a snapshot and
+     * are copied first.
+     * @param row the row
+     */
+    private void ownRow(Row row) {
+        if (row.epoch != epoch) {
+            row.colors = row.colors.clone();
+            row.bits = row.bits.clone();
+            row.epoch = epoch;
+        }
+    }
+
+    /**
+     * Moves the stored rows into a new array with room for more rows on both ends, closing up the gaps
+     * that deleted rows left behind. Most new rows go on top, so the top gets most of the room.
+     * @param capacity the number of slots in the new array
+     */
+    private void rebuild(int capacity) {
+        Row[] old_slots = slots;
+        int old_start = start;
+        int old_end = end;
+
+        slots = new Row[capacity];
+        tree = new int[capacity + 1];
+        start = (capacity - height) / 4;
+        end = start;
+        if (old_slots != null) {
+            for (int i = old_start; i < old_end; i++) {
+                if (old_slots[i] != null) slots[end++] = old_slots[i];
+            }
+        }
+
+        //Build the Fenwick tree in one pass by pushing each count up to its parent
+        for (int i = 1; i <= capacity; i++) {
+            if (slots[i - 1] != null) tree[i]++;
+            int parent = i + (i & -i);
+            if (parent <= capacity) tree[parent] += tree[i];
+        }
+    }
+
+    /**
+     * Compacts the stored rows if there are too many gaps, or if the array is much bigger than it
+     * needs to be.
+     */
+    private void compact() {
+        if (end - start > 2 * height + MIN_CAPACITY || slots.length > 4 * height + 2 * MIN_CAPACITY) {
+            rebuild(2 * height + MIN_CAPACITY);
+        }
+    }
+
+    /**
+     * Adds to the count of a slot in the Fenwick tree.
+     * @param slot the slot
+     * @param delta 1 for a new row, -1 for a deleted row
+     */
+    private void update(int slot, int delta) {
+        for (int i = slot + 1; i < tree.length; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+    /**
+     * Finds the slot of the stored row at the given height, skipping the gaps by walking down the Fenwick
+     * tree.
+     * @param h the height of the row above the floor (0 is the bottom row)
+     * @return the slot of the row
+     */
+    private int find(int h) {
+        int slot = 0;
+        int remaining = h + 1;
+        for (int step = Integer.highestOneBit(slots.length); step > 0; step >>= 1) {
+            if (slot + step <= slots.length && tree[slot + step] < remaining) {
+                slot += step;
+                remaining -= tree[slot];
+            }
+        }
+        return slot;
+    }
+
+    /**
+     * Gets the stored row at the given height.
+     * @param h the height of the row above the floor, which must be less than the number of stored rows
+     * @return the row
+     */
+    private Row rowAt(int h) {
+        return slots[find(h)];
+    }
+
+    /**
+     * Stores a new row on top of the pile.
+     * @param row the new top row
+     */
+    private void pushTop(Row row) {
+        if (end == slots.length) rebuild(2 * height + MIN_CAPACITY);
+        slots[end] = row;
+        update(end, 1);
+        end++;
+        height++;
+    }
+
+    /**
+     * Stores a new row under the pile, moving every other row up.
+     * @param row the new bottom row
+     */
+    private void pushBottom(Row row) {
+        if (start == 0) rebuild(2 * height + MIN_CAPACITY);
+        start--;
+        slots[start] = row;
+        update(start, 1);
+        height++;
+    }
+
+    /**
+     * Deletes a stored row, moving every row above it down. The array isn't compacted here, so the slots
+     * of the other rows stay where they are.
+     * @param slot the slot of the row
+     */
+    private void removeSlot(int slot) {
+        slots[slot] = null;
+        update(slot, -1);
+        height--;
+
+        while (end > start && slots[end - 1] == null) end--;
+        while (start < end && slots[start] == null) start++;
+    }
+
+    /**
+     * Finds the height of a column by looking down from the given height.
+     * @param column the column
+     * @param h the height to start looking from
+     * @return the height of the highest filled square in the column, or 0 if the column is empty
+     */
+    private int findColumnHeight(int column, int h) {
+        h = Math.min(h, height);
+        while (h > 0 && !isFilled(rowAt(h - 1).bits, column)) {
+            h--;
+        }
+        return h;
+    }
+
+    public byte getColor(int row, int column) {
+        int h = rows - 1 - row;
+        return h < height ? rowAt(h).colors[column] : EMPTY_SQUARE;
+    }
+
+    protected long rowWord(int row, int word) {
+        if (row < 0) return wall_row[word];
+        if (row >= rows) return FULL_WORD;
+        int h = rows - 1 - row;
+        return h < height ? rowAt(h).bits[word] : wall_row[word];
+    }
+
+    /**
+     * Adds a block to the pile and finds any completed rows. Empty rows are stored up to the block if it
+     * landed above the pile. Only the rows that the block covers are checked, using the fill count of
+     * each row.
+     * @param block the block that will be added to the pile
+     * @return a list of the completed rows. The same list is reused by the next call to this method.
+     */
+    public ArrayList<Integer> addBlockToPile(Block block) {
+        for (int i = 0; i < block.getSquareCount(); i++) {
+            int x = block.getSquareX(i);
+            int y = block.getSquareY(i);
+
+            if (endsGame(y, x)) game_over = true;
+            if (y < 0) continue;
+
+            int h = rows - 1 - y;
+            while (height <= h) {
+                pushTop(new Row(columns, wall_row, epoch));
+            }
+
+            Row row = rowAt(h);
+            ownRow(row);
+            boolean filled = isFilled(row.bits, x);
+
+            // add the square to the pile
+            if (!filled) row.fill++;
+            row.colors[x] = block.getColor();
+            setFilled(row.bits, x);
+            if (h >= column_height[x]) column_height[x] = h + 1;
+        }
+
+        return findCompletedRows(block);
+    }
+
+    /**
+     * Deletes all of the rows specified in row_list from the pile. Each deleted row costs O(log n), no
+     * matter how many rows are above it.
+     * @param row_list the list of integers representing the rows that will be deleted from the pile.
+     */
+    public void deleteRows(ArrayList<Integer> row_list) {
+        if (row_list.isEmpty()) return;
+
+        if (deleted_slots.length < row_list.size()) {
+            deleted_heights = new int[row_list.size()];
+            deleted_slots = new int[row_list.size()];
+        }
+
+        //Find all of the rows first, since deleting a row changes the height of every row above it.
+        //Rows above the pile aren't stored, so there's nothing to delete for them.
+        int count = 0;
+        for (int i = 0; i < row_list.size(); i++) {
+            int h = rows - 1 - row_list.get(i).intValue();
+            if (h < height) {
+                deleted_heights[count] = h;
+                deleted_slots[count] = find(h);
+                count++;
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            removeSlot(deleted_slots[i]);
+        }
+
+        //Empty rows that end up on top of the pile don't need to be stored
+        while (height > 0 && slots[end - 1].fill == 0) {
+            removeSlot(end - 1);
+        }
+        compact();
+
+        //Each column moves down by the number of deleted rows under its top square, unless the top
+        //square itself was deleted, in which case the new top is found by looking down from there
+        for (int j = 0; j < columns; j++) {
+            int h = column_height[j];
+            for (int i = 0; i < count; i++) {
+                if (deleted_heights[i] < column_height[j]) h--;
+            }
+            column_height[j] = findColumnHeight(j, h);
+        }
+    }
+
+    public void addGarbageRows(int count, int hole) {
+        checkGarbage(count, hole);
+
+        //Rows that are pushed out of the top of the grid are gone
+        while (height > 0 && height + count > rows) {
+            if (slots[end - 1].fill != 0) game_over = true;
+            removeSlot(end - 1);
+        }
+
+        for (int i = 0; i < count; i++) {
+            Row row = new Row(columns, wall_row, epoch);
+            Arrays.fill(row.colors, GARBAGE_SQUARE);
+            row.colors[hole] = EMPTY_SQUARE;
+            setGarbage(row.bits, hole);
+            row.fill = columns - 1;
+            pushBottom(row);
+        }
+        compact();
+
+        for (int j = 0; j < columns; j++) {
+            if (j != hole || column_height[j] > 0) {
+                column_height[j] = findColumnHeight(j, column_height[j] + count);
+            }
+        }
+    }
+
+    /**
+     * Cascade gravity (see BitBoard.findClusterDrops()). Only the stored rows take part, and the empty
+     * rows that are left on top of the pile stop being stored.
+     * @return a list of the rows that are full after everything has landed. The same list is reused by
+     * addBlockToPile.
+     */
+    public ArrayList<Integer> dropClusters() {
+        int top = getPileTop();
+        if (findClusterDrops(top)) {
+            for (int i = top; i < rows; i++) {
+                Row row = rowAt(rows - 1 - i);
+                ownRow(row);
+                System.arraycopy(wall_row, 0, row.bits, 0, words);
+                row.fill = 0;
+                for (int j = 0; j < columns; j++) {
+                    row.colors[j] = getDroppedColor(i, j);
+                    if (row.colors[j] != EMPTY_SQUARE) {
+                        setFilled(row.bits, j);
+                        row.fill++;
+                    }
+                }
+            }
+
+            while (height > 0 && slots[end - 1].fill == 0) {
+                removeSlot(end - 1);
+            }
+            compact();
+
+            //Squares only moved down their own columns, so each column top is found by looking down
+            for (int j = 0; j < columns; j++) {
+                column_height[j] = findColumnHeight(j, column_height[j]);
+            }
+        }
+        return findCompletedRows(top, rows);
+    }
+
+    protected boolean isRowFull(int row) {
+        int h = rows - 1 - row;
+        return h < height && rowAt(h).fill == columns;
+    }
+
+    public int getColumnTop(int column) {
+        return rows - column_height[column];
+    }
+
+    /**
+     * Takes a snapshot of the pile. The snapshot shares the arrays of the stored rows instead of copying
+     * them, and starting a new epoch makes the grid copy a row the next time it changes it (see ownRow()).
+     * The rows above the pile aren't stored in the snapshot either.
+     * @return the snapshot
+     */
+    public BoardSnapshot snapshot() {
+        epoch++;
+        byte[][] colors = new byte[height][];
+        long[][] bits = new long[height][];
+        int[] fill = new int[height];
+        int i = height;
+        for (int slot = start; slot < end; slot++) {
+            Row row = slots[slot];
+            if (row != null) {
+                i--;
+                colors[i] = row.colors;
+                bits[i] = row.bits;
+                fill[i] = row.fill;
+            }
+        }
+        return new BoardSnapshot(this, rows - height, colors, bits, fill, game_over);
+    }
+
+    /**
+     * Puts the pile back the way it was in a snapshot. Only the rows from the floor up to the top of the
+     * snapshot's pile are stored. The grid takes the snapshot's rows without copying them, and copies
+     * each one the next time it changes it.
+     * @param snapshot the snapshot, which must be the same size as the grid
+     */
+    public void restore(BoardSnapshot snapshot) {
+        if (snapshot.getRows() != rows || snapshot.getColumns() != columns) {
+            throw new IllegalArgumentException("The snapshot isn't the same size as the grid");
+        }
+
+        int top = rows;
+        for (int j = 0; j < columns; j++) {
+            column_height[j] = rows - snapshot.getColumnTop(j);
+            top = Math.min(top, snapshot.getColumnTop(j));
+        }
+
+        slots = null;
+        height = 0;
+        rebuild(2 * (rows - top) + MIN_CAPACITY);
+        for (int i = rows - 1; i >= top; i--) {
+            pushTop(new Row(snapshot.getRowColors(i), snapshot.getRowBits(i), snapshot.getRowFill(i), epoch - 1));
+        }
+        game_over = snapshot.isGameOver();
+    }
+}
\ No newline at end of file